@@ -0,0 +1,130 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the universe state out of a full JsonNode tree, which is what getUniverse
+ * callers used to do, with the streaming {@link UniverseStatus#parse}. The payload mimics a
+ * multi-region universe, with the per node details ahead of the fields we are after.
+ *
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UniverseStatusBenchmark {
+  @Param({"3", "30", "150"})
+  public int numNodes;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private byte[] payload;
+
+  @Setup
+  public void setUp() throws IOException {
+    String[] regions = {"us-west-2", "us-east-1", "eu-west-1"};
+    ObjectNode universe = mapper.createObjectNode();
+    universe.put("universeUUID", UUID.randomUUID().toString());
+    universe.put("name", "benchmark-universe");
+    universe.put("creationDate", System.currentTimeMillis());
+    universe.put("version", 42);
+
+    ObjectNode details = universe.putObject("universeDetails");
+    ArrayNode nodes = details.putArray("nodeDetailsSet");
+    for (int i = 0; i < numNodes; i++) {
+      String region = regions[i % regions.length];
+      ObjectNode node = nodes.addObject();
+      node.put("nodeIdx", i);
+      node.put("nodeName", "yb-benchmark-n" + i);
+      node.put("state", "Live");
+      node.put("isMaster", i < 3);
+      node.put("isTserver", true);
+      node.put("masterHttpPort", 7000);
+      node.put("tserverHttpPort", 9000);
+      node.put("yqlServerHttpPort", 12000);
+      node.put("redisServerHttpPort", 11000);
+      ObjectNode cloudInfo = node.putObject("cloudInfo");
+      cloudInfo.put("private_ip", "10.0." + (i / 250) + "." + (i % 250));
+      cloudInfo.put("public_ip", "54.0." + (i / 250) + "." + (i % 250));
+      cloudInfo.put("cloud", "aws");
+      cloudInfo.put("region", region);
+      cloudInfo.put("az", region + "a");
+      cloudInfo.put("instance_type", "c4.xlarge");
+      cloudInfo.put("subnet_id", "subnet-" + i);
+      node.put("azUuid", UUID.randomUUID().toString());
+      node.put("placementUuid", UUID.randomUUID().toString());
+    }
+
+    ArrayNode clusters = details.putArray("clusters");
+    ObjectNode cluster = clusters.addObject();
+    cluster.put("uuid", UUID.randomUUID().toString());
+    cluster.put("clusterType", "PRIMARY");
+    ObjectNode userIntent = cluster.putObject("userIntent");
+    userIntent.put("universeName", "benchmark-universe");
+    userIntent.put("numNodes", numNodes);
+    userIntent.put("replicationFactor", 3);
+    userIntent.put("ybSoftwareVersion", "1.1.0.0-b1");
+    ArrayNode regionList = userIntent.putArray("regionList");
+    ObjectNode gflags = userIntent.putObject("tserverGFlags");
+    for (String region : regions) {
+      regionList.add(UUID.randomUUID().toString());
+      gflags.put("placement_region_" + region.replace('-', '_'), region);
+    }
+
+    // Decoys: the same field names nested deeper must not be picked up by the streaming parser.
+    ObjectNode nestedTask = details.putObject("lastTaskDetails");
+    nestedTask.put("updateInProgress", false);
+    nestedTask.put("updateSucceeded", false);
+    details.put("updateInProgress", false);
+    details.put("updateSucceeded", true);
+    universe.putObject("resources").put("pricePerHour", 1.23);
+
+    payload = mapper.writeValueAsBytes(universe);
+  }
+
+  @Benchmark
+  public boolean jsonTree() throws IOException {
+    JsonNode universeDetails = mapper.readTree(payload).get("universeDetails");
+    return universeDetails.get("updateInProgress").asBoolean() ||
+        universeDetails.get("updateSucceeded").asBoolean();
+  }
+
+  @Benchmark
+  public boolean streaming() throws IOException {
+    UniverseStatus status = UniverseStatus.parse(new ByteArrayInputStream(payload));
+    return status.isUpdateInProgress() || status.isUpdateSucceeded();
+  }
+}
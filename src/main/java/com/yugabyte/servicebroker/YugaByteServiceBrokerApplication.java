@@ -12,17 +12,52 @@
  */
 package com.yugabyte.servicebroker;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.utils.YugaWareHttpClientFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @SpringBootApplication
 public class YugaByteServiceBrokerApplication {
 
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public HttpComponentsClientHttpRequestFactory yugaWareRequestFactory(YugaByteServiceConfig adminConfig) {
+		return YugaWareHttpClientFactory.createRequestFactory(adminConfig);
+	}
+
+	@Bean
+	public RestTemplate restTemplate(HttpComponentsClientHttpRequestFactory yugaWareRequestFactory) {
+		return new RestTemplate(yugaWareRequestFactory);
+	}
+
+	// Bounded pool for YugaWare calls made off the request thread. When it is saturated the
+	// caller runs the task itself, which throttles it instead of queueing without limit.
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService yugaWareExecutor(YugaByteServiceConfig adminConfig) {
+		return new ThreadPoolExecutor(adminConfig.executorThreads, adminConfig.executorThreads,
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(adminConfig.executorThreads * 4),
+				new ThreadFactoryBuilder().setNameFormat("yugaware-%d").setDaemon(true).build(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	// Pool for the per-API credential tasks of binds, apart from yugaWareExecutor so that binds
+	// don't queue behind cache reloads. When it is saturated the bind is rejected, as running
+	// the tasks on the request thread would get past binding_timeout_secs.
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService bindingExecutor(YugaByteServiceConfig adminConfig) {
+		return new ThreadPoolExecutor(adminConfig.bindingThreads, adminConfig.bindingThreads,
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(adminConfig.bindingThreads * 4),
+				new ThreadFactoryBuilder().setNameFormat("binding-%d").setDaemon(true).build(),
+				new ThreadPoolExecutor.AbortPolicy());
 	}
 
 	public static void main(String[] args) {
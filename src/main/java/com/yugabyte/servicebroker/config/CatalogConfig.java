@@ -12,14 +12,17 @@
  */
 package com.yugabyte.servicebroker.config;
 
+import com.yugabyte.servicebroker.utils.YBClient;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.servicebroker.model.catalog.Plan;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -49,6 +52,33 @@ public class CatalogConfig {
             .build()).collect(Collectors.toList());
   }
 
+  // Checked when the catalog is loaded, so that a typo in a plan's apis stops the broker from
+  // starting instead of failing every binding of the plan.
+  @PostConstruct
+  public void validate() {
+    if (plans == null) {
+      return;
+    }
+    for (PlanMetadata plan : plans) {
+      if (plan.getApis() == null) {
+        continue;
+      }
+      Set<YBClient.ClientType> clientTypes;
+      try {
+        clientTypes = YBClient.ClientType.parse(plan.getApis());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalStateException("Plan " + plan.getCode() + ": " + e.getMessage());
+      }
+      if (plan.isShared()) {
+        clientTypes.retainAll(YBClient.TENANT_CLIENT_TYPES);
+      }
+      if (clientTypes.isEmpty()) {
+        throw new IllegalStateException("Plan " + plan.getCode() + " has no API in apis " +
+                                        plan.getApis() + " that it can offer");
+      }
+    }
+  }
+
   public PlanMetadata getPlan(String planCode) {
     Optional<PlanMetadata> requestedPlan = getPlans().stream().filter( (plan ) ->
         plan.getCode().equals(planCode)).findFirst();
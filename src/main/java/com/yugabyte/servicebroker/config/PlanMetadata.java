@@ -28,6 +28,18 @@ public class PlanMetadata {
   public Integer memory;
   public List<String> bullets;
   public Map<String, String> cloudInstanceType;
+  // Number of ready universes kept for this plan, and how long one may sit unclaimed before it
+  // is replaced with a new one.
+  public Integer warmPoolSize;
+  public Long warmPoolMaxIdleSecs;
+  // Plans with max_tenants are shared: each service instance gets its own database and
+  // keyspace on one of the plan's shared universes, which hold up to max_tenants instances.
+  public Integer maxTenants;
+  // Number of credentials kept created ahead of time for each API of the plan's instances.
+  public Integer credentialPoolSize;
+  // The APIs that bindings get credentials for unless they ask with the apis parameter, all
+  // of them if not set.
+  public List<String> apis;
 
   public String getCode() {
     return code;
@@ -77,6 +89,50 @@ public class PlanMetadata {
     this.cloudInstanceType = cloudInstanceType;
   }
 
+  public int getWarmPoolSize() {
+    return warmPoolSize == null ? 0 : warmPoolSize;
+  }
+
+  public void setWarmPoolSize(Integer warmPoolSize) {
+    this.warmPoolSize = warmPoolSize;
+  }
+
+  public long getWarmPoolMaxIdleSecs() {
+    return warmPoolMaxIdleSecs == null ? 0 : warmPoolMaxIdleSecs;
+  }
+
+  public void setWarmPoolMaxIdleSecs(Long warmPoolMaxIdleSecs) {
+    this.warmPoolMaxIdleSecs = warmPoolMaxIdleSecs;
+  }
+
+  public int getMaxTenants() {
+    return maxTenants == null ? 0 : maxTenants;
+  }
+
+  public void setMaxTenants(Integer maxTenants) {
+    this.maxTenants = maxTenants;
+  }
+
+  public int getCredentialPoolSize() {
+    return credentialPoolSize == null ? 0 : credentialPoolSize;
+  }
+
+  public void setCredentialPoolSize(Integer credentialPoolSize) {
+    this.credentialPoolSize = credentialPoolSize;
+  }
+
+  public List<String> getApis() {
+    return apis;
+  }
+
+  public void setApis(List<String> apis) {
+    this.apis = apis;
+  }
+
+  public boolean isShared() {
+    return getMaxTenants() > 0;
+  }
+
   @Override
   public String toString() {
     return "Cores: " + cores + ", Memory (GB): " + memory;
@@ -34,6 +34,161 @@ public class YugaByteServiceConfig {
   @Value("${yugabyte.admin.password:cf_password}")
   public String password;
 
+  // Age after which the YugaWare auth token is refreshed ahead of use, 0 disables it.
+  @Value("${yugabyte.admin.token_refresh_secs:0}")
+  public long tokenRefreshSecs;
+
+  // Connection pool and timeouts for the HTTP client used to talk to YugaWare.
+  @Value("${yugabyte.admin.max_connections:50}")
+  public int maxConnections;
+
+  @Value("${yugabyte.admin.max_connections_per_route:50}")
+  public int maxConnectionsPerRoute;
+
+  @Value("${yugabyte.admin.keep_alive_secs:30}")
+  public long keepAliveSecs;
+
+  @Value("${yugabyte.admin.idle_timeout_secs:60}")
+  public long idleTimeoutSecs;
+
+  @Value("${yugabyte.admin.connect_timeout_ms:5000}")
+  public int connectTimeoutMs;
+
+  @Value("${yugabyte.admin.read_timeout_ms:60000}")
+  public int readTimeoutMs;
+
+  @Value("${yugabyte.admin.connection_request_timeout_ms:5000}")
+  public int connectionRequestTimeoutMs;
+
+  // Threads available for background and fan-out calls to YugaWare.
+  @Value("${yugabyte.admin.executor_threads:16}")
+  public int executorThreads;
+
+  // Refresh intervals for cached YugaWare metadata, 0 disables caching for that endpoint.
+  @Value("${yugabyte.admin.cache.releases_ttl_secs:3600}")
+  public long releasesCacheTtlSecs;
+
+  @Value("${yugabyte.admin.cache.providers_ttl_secs:3600}")
+  public long providersCacheTtlSecs;
+
+  @Value("${yugabyte.admin.cache.regions_ttl_secs:3600}")
+  public long regionsCacheTtlSecs;
+
+  @Value("${yugabyte.admin.cache.access_keys_ttl_secs:3600}")
+  public long accessKeysCacheTtlSecs;
+
+  @Value("${yugabyte.admin.cache.universe_endpoints_ttl_secs:300}")
+  public long universeEndpointsCacheTtlSecs;
+
+  // How long a fetched universe status is reused by other polls of the same universe, polls
+  // that arrive while a fetch is in flight always share it. 0 disables the reuse.
+  @Value("${yugabyte.admin.cache.universe_status_ttl_ms:0}")
+  public long universeStatusCacheTtlMs;
+
+  // Cached metadata past its refresh interval is still served while it reloads in the
+  // background, up to this age.
+  @Value("${yugabyte.admin.cache.max_stale_secs:86400}")
+  public long cacheMaxStaleSecs;
+
+  @Value("${yugabyte.admin.cache.max_entries:100}")
+  public long cacheMaxEntries;
+
+  // How long a bind waits for each API's credentials before leaving that API out.
+  @Value("${yugabyte.admin.binding_timeout_secs:60}")
+  public long bindingTimeoutSecs;
+
+  // Threads that create the credentials of binds, a bind takes one per API.
+  @Value("${yugabyte.admin.binding_threads:16}")
+  public int bindingThreads;
+
+  // Circuit breaker around YugaWare calls. It opens once the share of failed or slow calls in
+  // the last window_size calls passes its threshold, fails calls fast while open, and lets
+  // half_open_calls probes through after open_secs to decide whether to close again.
+  @Value("${yugabyte.admin.circuit_breaker.enabled:true}")
+  public boolean circuitBreakerEnabled;
+
+  @Value("${yugabyte.admin.circuit_breaker.failure_rate_threshold:50}")
+  public float circuitBreakerFailureRateThreshold;
+
+  @Value("${yugabyte.admin.circuit_breaker.slow_call_rate_threshold:80}")
+  public float circuitBreakerSlowCallRateThreshold;
+
+  @Value("${yugabyte.admin.circuit_breaker.slow_call_ms:10000}")
+  public long circuitBreakerSlowCallMs;
+
+  @Value("${yugabyte.admin.circuit_breaker.window_size:20}")
+  public int circuitBreakerWindowSize;
+
+  @Value("${yugabyte.admin.circuit_breaker.minimum_calls:10}")
+  public int circuitBreakerMinimumCalls;
+
+  @Value("${yugabyte.admin.circuit_breaker.open_secs:30}")
+  public long circuitBreakerOpenSecs;
+
+  @Value("${yugabyte.admin.circuit_breaker.half_open_calls:3}")
+  public int circuitBreakerHalfOpenCalls;
+
+  // Workers running create and delete jobs, and how often a job that hit a transient YugaWare
+  // error is retried before it is failed.
+  @Value("${yugabyte.admin.provisioning.threads:4}")
+  public int provisioningThreads;
+
+  @Value("${yugabyte.admin.provisioning.max_attempts:5}")
+  public int provisioningMaxAttempts;
+
+  @Value("${yugabyte.admin.provisioning.retry_delay_secs:30}")
+  public long provisioningRetryDelaySecs;
+
+  // Pool of pre-created universes handed out to new instances, sized per plan with
+  // warm_pool_size. Checked and refilled every refill_interval_secs.
+  @Value("${yugabyte.admin.warm_pool.enabled:false}")
+  public boolean warmPoolEnabled;
+
+  @Value("${yugabyte.admin.warm_pool.refill_interval_secs:60}")
+  public long warmPoolRefillIntervalSecs;
+
+  // Pool of credentials created ahead of time for the instances of plans with a
+  // credential_pool_size, topped up every refill_interval_secs.
+  @Value("${yugabyte.admin.credential_pool.enabled:false}")
+  public boolean credentialPoolEnabled;
+
+  @Value("${yugabyte.admin.credential_pool.refill_interval_secs:60}")
+  public long credentialPoolRefillIntervalSecs;
+
+  // TCP probes of the nodes of a universe when creating credentials, so that bindings list
+  // the nodes that answered, fastest first. Results are reused for ttl_secs.
+  @Value("${yugabyte.admin.endpoint_probe.enabled:true}")
+  public boolean endpointProbeEnabled;
+
+  @Value("${yugabyte.admin.endpoint_probe.timeout_ms:250}")
+  public int endpointProbeTimeoutMs;
+
+  @Value("${yugabyte.admin.endpoint_probe.ttl_secs:15}")
+  public long endpointProbeTtlSecs;
+
+  // Admin connections to the database APIs of universes, kept open across bindings. Dropped
+  // once unused for idle_secs, or when the universe is deleted.
+  @Value("${yugabyte.admin.api_connections.idle_secs:300}")
+  public long apiConnectionsIdleSecs;
+
+  @Value("${yugabyte.admin.api_connections.max_universes:50}")
+  public int apiConnectionsMaxUniverses;
+
+  // Connect and read timeout of YEDIS admin connections, after which the next node is tried.
+  @Value("${yugabyte.admin.api_connections.yedis_timeout_ms:2000}")
+  public int apiConnectionsYEDISTimeoutMs;
+
+  // Background reconciliation of universe states for instances with an operation in flight,
+  // polled at the fast interval while there are any and at the idle interval otherwise.
+  @Value("${yugabyte.admin.reconciler.enabled:true}")
+  public boolean reconcilerEnabled;
+
+  @Value("${yugabyte.admin.reconciler.fast_interval_secs:5}")
+  public long reconcilerFastIntervalSecs;
+
+  @Value("${yugabyte.admin.reconciler.idle_interval_secs:60}")
+  public long reconcilerIdleIntervalSecs;
+
   @Value("${yugabyte.service.id:yugabyte-service-broker}")
   public String serviceId;
 
@@ -0,0 +1,45 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.endpoint;
+
+import com.yugabyte.servicebroker.service.YugaByteAdminService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Admin endpoint for the YugaWare metadata cache, GET /actuator/yugawarecache returns the cache
+ * stats and DELETE /actuator/yugawarecache drops everything so it is reloaded on next use.
+ * It is only exposed over JMX by default, since the actuator is not behind the broker's auth.
+ */
+@Component
+@Endpoint(id = "yugawarecache")
+public class YugaWareCacheEndpoint {
+
+  @Autowired
+  private YugaByteAdminService adminService;
+
+  @ReadOperation
+  public Map<String, Object> stats() {
+    return adminService.getMetadataCacheStats();
+  }
+
+  @DeleteOperation
+  public void invalidate() {
+    adminService.invalidateMetadataCache();
+  }
+}
@@ -0,0 +1,26 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.exception;
+
+/**
+ * Raised when YugaWare rejects a request with 401/403, which usually means the cached
+ * auth token has expired or has been revoked.
+ */
+public class YugaByteAuthenticationException extends YugaByteServiceException {
+
+  private static final long serialVersionUID = -2916304741258346611L;
+
+  public YugaByteAuthenticationException(String message) {
+    super(message);
+  }
+}
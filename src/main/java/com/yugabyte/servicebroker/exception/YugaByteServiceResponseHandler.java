@@ -18,7 +18,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.ResponseErrorHandler;
 
-import javax.security.sasl.AuthenticationException;
 import java.io.IOException;
 
 public class YugaByteServiceResponseHandler implements ResponseErrorHandler {
@@ -29,8 +28,8 @@ public class YugaByteServiceResponseHandler implements ResponseErrorHandler {
     if (response.getStatusCode() == HttpStatus.FORBIDDEN ||
         response.getStatusCode() == HttpStatus.UNAUTHORIZED) {
       String errorMsg = "YugaWare API call is unauthorized, check credentials";
-      logger.error(errorMsg);
-      throw new AuthenticationException(errorMsg);
+      logger.warn(errorMsg);
+      throw new YugaByteAuthenticationException(errorMsg);
     }
   }
 
@@ -0,0 +1,26 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.exception;
+
+/**
+ * Raised without calling YugaWare while the admin client circuit breaker is open, because
+ * recent calls to it have been failing or timing out.
+ */
+public class YugaWareUnavailableException extends YugaByteServiceException {
+
+  private static final long serialVersionUID = 6203358127402374915L;
+
+  public YugaWareUnavailableException(String message) {
+    super(message);
+  }
+}
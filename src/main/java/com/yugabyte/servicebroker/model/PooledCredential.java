@@ -0,0 +1,83 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.util.Map;
+
+/**
+ * Credentials for one API of a service instance, created ahead of time and waiting to be
+ * handed to a new binding.
+ */
+@Entity
+@Table(name = "pooled_credentials",
+       indexes = @Index(name = "pooled_credentials_instance", columnList = "instanceId,api,role"))
+public class PooledCredential {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(length = 50)
+  private String instanceId;
+
+  @Column(length = 25)
+  private String api;
+
+  // The role asked for by the binding, or "default" when it asked for none.
+  @Column(length = 50)
+  private String role;
+
+  @Lob
+  @Column()
+  @Convert(converter = ConverterMapToHash.class)
+  private Map<String, String> credentials;
+
+  @SuppressWarnings("unused")
+  private PooledCredential() {}
+
+  public PooledCredential(String instanceId, String api, String role,
+                          Map<String, String> credentials) {
+    this.instanceId = instanceId;
+    this.api = api;
+    this.role = role;
+    this.credentials = credentials;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  public String getApi() {
+    return api;
+  }
+
+  public String getRole() {
+    return role;
+  }
+
+  public Map<String, String> getCredentials() {
+    return credentials;
+  }
+}
@@ -0,0 +1,186 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.util.Map;
+
+/**
+ * A create or delete of a service instance that runs in the background. The job keeps
+ * everything needed to run its YugaWare steps again, so it can be resumed after a restart.
+ * There is at most one job per service instance.
+ */
+@Entity
+@Table(name = "provisioning_jobs")
+public class ProvisioningJob {
+  public enum Operation {
+    CREATE,
+    DELETE
+  }
+
+  public enum State {
+    PENDING,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+  }
+
+  private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+  @Id
+  @Column(length = 50)
+  private String instanceId;
+
+  @Column(length = 25)
+  private Operation operation;
+
+  @Column(length = 25)
+  private State state;
+
+  @Column(length = 50)
+  private String serviceDefinitionId;
+
+  @Column(length = 50)
+  private String planId;
+
+  @Lob
+  @Column()
+  @Convert(converter = ConverterMapToJson.class)
+  private Map<String, Object> parameters;
+
+  @Column(length = 50)
+  private String universeUUID;
+
+  @Column(length = MAX_DESCRIPTION_LENGTH)
+  private String description;
+
+  @Column()
+  private int attempts;
+
+  // Set before the universe create or delete is sent to YugaWare, so that a resumed job knows
+  // whether an earlier attempt may have done it already.
+  @Column()
+  private boolean submitted;
+
+  @SuppressWarnings("unused")
+  private ProvisioningJob() {}
+
+  private ProvisioningJob(Operation operation, String instanceId, String serviceDefinitionId,
+                          String planId, Map<String, Object> parameters, String universeUUID) {
+    this.operation = operation;
+    this.instanceId = instanceId;
+    this.serviceDefinitionId = serviceDefinitionId;
+    this.planId = planId;
+    this.parameters = parameters;
+    this.universeUUID = universeUUID;
+    this.state = State.PENDING;
+    this.description = "Waiting to start";
+  }
+
+  public static ProvisioningJob create(CreateServiceInstanceRequest request) {
+    return new ProvisioningJob(Operation.CREATE, request.getServiceInstanceId(),
+        request.getServiceDefinitionId(), request.getPlanId(), request.getParameters(), null);
+  }
+
+  public static ProvisioningJob delete(ServiceInstance si) {
+    return new ProvisioningJob(Operation.DELETE, si.getServiceInstanceId(),
+        si.getServiceDefinitionId(), si.getPlanId(), null, si.getUniverseUUID());
+  }
+
+  public CreateServiceInstanceRequest toCreateRequest() {
+    CreateServiceInstanceRequest.CreateServiceInstanceRequestBuilder builder =
+        CreateServiceInstanceRequest.builder()
+            .serviceInstanceId(instanceId)
+            .serviceDefinitionId(serviceDefinitionId)
+            .planId(planId);
+    if (parameters != null) {
+      builder.parameters(parameters);
+    }
+    return builder.build();
+  }
+
+  public boolean isFinished() {
+    return state == State.SUCCEEDED || state == State.FAILED;
+  }
+
+  public void start() {
+    this.state = State.RUNNING;
+    this.attempts++;
+  }
+
+  // Puts the job back to wait for something else to happen first, without counting the run
+  // as a failed attempt.
+  public void postpone(String description) {
+    this.state = State.PENDING;
+    this.attempts--;
+    setDescription(description);
+  }
+
+  public void update(State state, String description) {
+    this.state = state;
+    setDescription(description);
+  }
+
+  public void setDescription(String description) {
+    this.description = description != null && description.length() > MAX_DESCRIPTION_LENGTH
+        ? description.substring(0, MAX_DESCRIPTION_LENGTH)
+        : description;
+  }
+
+  public void markSubmitted() {
+    this.submitted = true;
+  }
+
+  public void setUniverseUUID(String universeUUID) {
+    this.universeUUID = universeUUID;
+  }
+
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  public String getPlanId() {
+    return planId;
+  }
+
+  public Operation getOperation() {
+    return operation;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public String getUniverseUUID() {
+    return universeUUID;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public boolean isSubmitted() {
+    return submitted;
+  }
+}
@@ -5,12 +5,14 @@ import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import java.util.Map;
 
 @Entity
-@Table(name = "service_bindings")
+@Table(name = "service_bindings",
+       indexes = @Index(name = "service_bindings_instance", columnList = "serviceInstanceId"))
 public class ServiceBinding {
   @Id
   @Column(length = 50)
@@ -19,7 +19,9 @@ public class ServiceInstance {
     UPDATING,
     DELETING,
     LIVE,
-    ERROR
+    ERROR,
+    // States are stored by ordinal, so new ones go at the end.
+    DELETED
   }
 
   @Id
@@ -38,6 +40,10 @@ public class ServiceInstance {
   @Column(length = 25)
   private UniverseState universeState;
 
+  // The database and keyspace of the instance, for instances of a shared plan.
+  @Column(length = 64)
+  private String tenant;
+
   @SuppressWarnings("unused")
   private ServiceInstance() {}
 
@@ -50,15 +56,30 @@ public class ServiceInstance {
     this.universeState = UniverseState.CREATING;
   }
 
+  public void setUniverseUUID(String universeUUID) {
+    this.universeUUID = universeUUID;
+  }
+
+  public void setTenant(String tenant) {
+    this.tenant = tenant;
+  }
+
   public void updateState(UniverseState universeState) {
     this.universeState = universeState;
   }
 
   public void updateState(JsonNode universeDetails) {
-    boolean updateInProgress = universeDetails.get("updateInProgress").asBoolean();
+    updateState(universeDetails.get("updateInProgress").asBoolean(),
+                universeDetails.path("updateSucceeded").asBoolean());
+  }
+
+  public void updateState(UniverseStatus universeStatus) {
+    updateState(universeStatus.isUpdateInProgress(), universeStatus.isUpdateSucceeded());
+  }
+
+  private void updateState(boolean updateInProgress, boolean updateSucceeded) {
     if ((this.universeState == UniverseState.CREATING ||
         this.universeState == UniverseState.UPDATING) && !updateInProgress) {
-      boolean updateSucceeded = universeDetails.get("updateSucceeded").asBoolean();
       this.universeState = updateSucceeded ? UniverseState.LIVE : UniverseState.ERROR;
     }
   }
@@ -87,4 +108,12 @@ public class ServiceInstance {
   public UniverseState getUniverseState() {
     return this.universeState;
   }
+
+  public String getTenant() {
+    return this.tenant;
+  }
+
+  public boolean isShared() {
+    return this.tenant != null;
+  }
 }
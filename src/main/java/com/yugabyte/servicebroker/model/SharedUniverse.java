@@ -0,0 +1,73 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A universe managed by the broker for a shared plan, whose service instances each get a
+ * database and keyspace on it rather than a universe of their own.
+ */
+@Entity
+@Table(name = "shared_universes")
+public class SharedUniverse {
+  public enum State {
+    CREATING,
+    READY
+  }
+
+  @Id
+  @Column(length = 50)
+  private String universeUUID;
+
+  @Column(length = 50)
+  private String planId;
+
+  @Column(length = 25)
+  private State state;
+
+  @Column()
+  private int tenantCount;
+
+  @SuppressWarnings("unused")
+  private SharedUniverse() {}
+
+  public SharedUniverse(String universeUUID, String planId) {
+    this.universeUUID = universeUUID;
+    this.planId = planId;
+    this.state = State.CREATING;
+  }
+
+  public void setReady() {
+    this.state = State.READY;
+  }
+
+  public String getUniverseUUID() {
+    return universeUUID;
+  }
+
+  public String getPlanId() {
+    return planId;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public int getTenantCount() {
+    return tenantCount;
+  }
+}
@@ -0,0 +1,119 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Where the nodes of a universe are, as listed in the nodeDetailsSet of its YugaWare universe
+ * document.
+ */
+public class UniversePlacement {
+  public static class Node {
+    private final String host;
+    private final String cloud;
+    private final String region;
+    private final String zone;
+    private final boolean primary;
+
+    public Node(String host, String cloud, String region, String zone, boolean primary) {
+      this.host = host;
+      this.cloud = cloud;
+      this.region = region;
+      this.zone = zone;
+      this.primary = primary;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public String getCloud() {
+      return cloud;
+    }
+
+    public String getRegion() {
+      return region;
+    }
+
+    public String getZone() {
+      return zone;
+    }
+
+    // Whether the node is in the primary cluster rather than a read replica.
+    public boolean isPrimary() {
+      return primary;
+    }
+
+    // The placement of the node in the cloud.region.zone form taken by the smart drivers.
+    public String getTopologyKey() {
+      return cloud + "." + region + "." + zone;
+    }
+  }
+
+  private final List<Node> nodes;
+
+  public UniversePlacement(List<Node> nodes) {
+    this.nodes = Collections.unmodifiableList(nodes);
+  }
+
+  public List<Node> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the zones of the primary cluster, which is where apps should spread their
+   * connections.
+   */
+  public List<String> getTopologyKeys() {
+    Set<String> topologyKeys = new TreeSet<>();
+    for (Node node : nodes) {
+      if (node.isPrimary()) {
+        topologyKeys.add(node.getTopologyKey());
+      }
+    }
+    return new ArrayList<>(topologyKeys);
+  }
+
+  public static UniversePlacement fromUniverse(JsonNode universe) {
+    JsonNode universeDetails = universe.path("universeDetails");
+    Set<String> primaryClusters = new HashSet<>();
+    for (JsonNode cluster : universeDetails.path("clusters")) {
+      if (cluster.path("clusterType").asText().equals("PRIMARY")) {
+        primaryClusters.add(cluster.path("uuid").asText());
+      }
+    }
+    List<Node> nodes = new ArrayList<>();
+    for (JsonNode nodeDetails : universeDetails.path("nodeDetailsSet")) {
+      JsonNode cloudInfo = nodeDetails.path("cloudInfo");
+      if (!cloudInfo.hasNonNull("private_ip")) {
+        continue;
+      }
+      // Universes with a single cluster may not name it on their nodes.
+      String placementUuid = nodeDetails.path("placementUuid").asText(null);
+      nodes.add(new Node(cloudInfo.get("private_ip").asText(),
+                         cloudInfo.path("cloud").asText(),
+                         cloudInfo.path("region").asText(),
+                         cloudInfo.path("az").asText(),
+                         placementUuid == null || primaryClusters.contains(placementUuid)));
+    }
+    return new UniversePlacement(nodes);
+  }
+}
@@ -0,0 +1,127 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The part of a YugaWare universe document that the service instance state machine needs.
+ * Universe documents carry every node's details and get large for multi-region universes,
+ * so this is read with the streaming parser and everything else is skipped without being
+ * materialized.
+ */
+public class UniverseStatus {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final String universeUUID;
+  private final String name;
+  private final boolean updateInProgress;
+  private final boolean updateSucceeded;
+
+  public UniverseStatus(String universeUUID, boolean updateInProgress, boolean updateSucceeded) {
+    this(universeUUID, null, updateInProgress, updateSucceeded);
+  }
+
+  public UniverseStatus(String universeUUID, String name, boolean updateInProgress,
+                        boolean updateSucceeded) {
+    this.universeUUID = universeUUID;
+    this.name = name;
+    this.updateInProgress = updateInProgress;
+    this.updateSucceeded = updateSucceeded;
+  }
+
+  public String getUniverseUUID() {
+    return universeUUID;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isUpdateInProgress() {
+    return updateInProgress;
+  }
+
+  public boolean isUpdateSucceeded() {
+    return updateSucceeded;
+  }
+
+  public static UniverseStatus parse(InputStream universeJson) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(universeJson)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected a universe object");
+      }
+      return parseUniverse(parser);
+    }
+  }
+
+  /**
+   * Parses the universe list returned by GET universes.
+   */
+  public static List<UniverseStatus> parseList(InputStream universesJson) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(universesJson)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new JsonParseException(parser, "Expected a list of universes");
+      }
+      List<UniverseStatus> statuses = new ArrayList<>();
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        statuses.add(parseUniverse(parser));
+      }
+      return statuses;
+    }
+  }
+
+  // Expects the parser to be on the START_OBJECT of a universe, and leaves it on its END_OBJECT.
+  private static UniverseStatus parseUniverse(JsonParser parser) throws IOException {
+    String universeUUID = null;
+    String name = null;
+    Boolean updateInProgress = null;
+    boolean updateSucceeded = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (field.equals("universeUUID")) {
+        universeUUID = parser.getValueAsString();
+      } else if (field.equals("name")) {
+        name = parser.getValueAsString();
+      } else if (field.equals("universeDetails") && value == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String detail = parser.getCurrentName();
+          parser.nextToken();
+          if (detail.equals("updateInProgress")) {
+            updateInProgress = parser.getValueAsBoolean();
+          } else if (detail.equals("updateSucceeded")) {
+            updateSucceeded = parser.getValueAsBoolean();
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (updateInProgress == null) {
+      throw new JsonParseException(parser,
+          "Universe " + universeUUID + " has no universeDetails.updateInProgress");
+    }
+    return new UniverseStatus(universeUUID, name, updateInProgress, updateSucceeded);
+  }
+}
@@ -0,0 +1,87 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A universe created ahead of time for a plan, waiting to be handed to a new service instance.
+ */
+@Entity
+@Table(name = "warm_universes")
+public class WarmUniverse {
+  public enum State {
+    CREATING,
+    READY
+  }
+
+  // YugaWare only names the universe once it has taken the create, so the pool knows its
+  // universes by the name they are created with.
+  @Id
+  @Column(length = 100)
+  private String universeName;
+
+  // Null until the broker hears back about the create.
+  @Column(length = 50)
+  private String universeUUID;
+
+  @Column(length = 50)
+  private String planId;
+
+  @Column(length = 25)
+  private State state;
+
+  @Column()
+  private long createdAt;
+
+  @SuppressWarnings("unused")
+  private WarmUniverse() {}
+
+  public WarmUniverse(String universeName, String planId) {
+    this.universeName = universeName;
+    this.planId = planId;
+    this.state = State.CREATING;
+    this.createdAt = System.currentTimeMillis();
+  }
+
+  public void setReady() {
+    this.state = State.READY;
+  }
+
+  public void setUniverseUUID(String universeUUID) {
+    this.universeUUID = universeUUID;
+  }
+
+  public String getUniverseName() {
+    return universeName;
+  }
+
+  public String getUniverseUUID() {
+    return universeUUID;
+  }
+
+  public String getPlanId() {
+    return planId;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+}
@@ -0,0 +1,38 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.repository;
+
+import com.yugabyte.servicebroker.model.PooledCredential;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface PooledCredentialRepository extends JpaRepository<PooledCredential, Long> {
+  List<PooledCredential> findByInstanceId(String instanceId);
+
+  List<PooledCredential> findTop5ByInstanceIdAndApiAndRoleOrderById(String instanceId,
+                                                                    String api, String role);
+
+  int countByInstanceIdAndApiAndRole(String instanceId, String api, String role);
+
+  // Takes the credentials out of the pool if they are still there. Returns 1 for the one
+  // caller that got them, so concurrent bindings never share credentials.
+  @Modifying
+  @Transactional
+  @Query("delete from PooledCredential c where c.id = :id")
+  int claim(@Param("id") Long id);
+}
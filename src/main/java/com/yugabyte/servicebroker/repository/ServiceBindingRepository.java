@@ -14,6 +14,18 @@ package com.yugabyte.servicebroker.repository;
 
 import com.yugabyte.servicebroker.model.ServiceBinding;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 public interface ServiceBindingRepository extends JpaRepository<ServiceBinding, String> {
+  List<ServiceBinding> findByServiceInstanceId(String serviceInstanceId);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ServiceBinding b where b.serviceInstanceId = :serviceInstanceId")
+  int deleteByServiceInstanceId(@Param("serviceInstanceId") String serviceInstanceId);
 }
\ No newline at end of file
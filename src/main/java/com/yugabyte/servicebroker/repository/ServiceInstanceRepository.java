@@ -13,7 +13,27 @@
 package com.yugabyte.servicebroker.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import com.yugabyte.servicebroker.model.ServiceInstance;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface ServiceInstanceRepository extends JpaRepository<ServiceInstance, String> {
-}
\ No newline at end of file
+  List<ServiceInstance> findByUniverseStateIn(Collection<ServiceInstance.UniverseState> states);
+
+  List<ServiceInstance> findByUniverseUUID(String universeUUID);
+
+  // Moves the instances that are still in the expected state to the new one, so that a state
+  // set by someone else in the meantime is never overwritten. Returns the number moved.
+  @Modifying
+  @Transactional
+  @Query("update ServiceInstance si set si.universeState = :state " +
+         "where si.instanceId in :ids and si.universeState = :expected")
+  int updateStates(@Param("ids") Collection<String> instanceIds,
+                   @Param("expected") ServiceInstance.UniverseState expected,
+                   @Param("state") ServiceInstance.UniverseState state);
+}
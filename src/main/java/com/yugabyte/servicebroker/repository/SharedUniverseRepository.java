@@ -0,0 +1,39 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.repository;
+
+import com.yugabyte.servicebroker.model.SharedUniverse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface SharedUniverseRepository extends JpaRepository<SharedUniverse, String> {
+  List<SharedUniverse> findByPlanId(String planId);
+
+  // Takes one of the free tenant slots of the universe. Returns 0 if it filled up meanwhile.
+  @Modifying
+  @Transactional
+  @Query("update SharedUniverse s set s.tenantCount = s.tenantCount + 1 " +
+         "where s.universeUUID = :universeUUID and s.tenantCount < :maxTenants")
+  int reserve(@Param("universeUUID") String universeUUID, @Param("maxTenants") int maxTenants);
+
+  @Modifying
+  @Transactional
+  @Query("update SharedUniverse s set s.tenantCount = s.tenantCount - 1 " +
+         "where s.universeUUID = :universeUUID and s.tenantCount > 0")
+  int release(@Param("universeUUID") String universeUUID);
+}
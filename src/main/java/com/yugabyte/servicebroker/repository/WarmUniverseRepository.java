@@ -0,0 +1,35 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.repository;
+
+import com.yugabyte.servicebroker.model.WarmUniverse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface WarmUniverseRepository extends JpaRepository<WarmUniverse, String> {
+  List<WarmUniverse> findByPlanIdOrderByCreatedAt(String planId);
+
+  boolean existsByUniverseUUID(String universeUUID);
+
+  // Takes the universe out of the pool if it is still there and ready. Returns 1 for the one
+  // caller that got it, so concurrent claims never hand out the same universe twice.
+  @Modifying
+  @Transactional
+  @Query("delete from WarmUniverse w where w.universeUUID = :universeUUID and w.state = :state")
+  int claim(@Param("universeUUID") String universeUUID, @Param("state") WarmUniverse.State state);
+}
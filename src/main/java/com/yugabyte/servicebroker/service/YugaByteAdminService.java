@@ -12,22 +12,49 @@
  */
 package com.yugabyte.servicebroker.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
 import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteAuthenticationException;
 import com.yugabyte.servicebroker.exception.YugaByteServiceException;
 import com.yugabyte.servicebroker.exception.YugaByteServiceResponseHandler;
 import com.yugabyte.servicebroker.model.ServiceBinding;
 import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniversePlacement;
+import com.yugabyte.servicebroker.model.UniverseStatus;
 import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
 import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
 import com.yugabyte.servicebroker.utils.CommonUtils;
+import com.yugabyte.servicebroker.utils.TableSpec;
 import com.yugabyte.servicebroker.utils.YBClient;
+import com.yugabyte.servicebroker.utils.YBConnectionCache;
+import com.yugabyte.servicebroker.utils.YBEndpointProber;
+import com.yugabyte.servicebroker.utils.YCQLClient;
+import com.yugabyte.servicebroker.utils.YEDISClient;
+import com.yugabyte.servicebroker.utils.YSQLClient;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
 import org.springframework.http.HttpEntity;
@@ -37,43 +64,241 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 @Service
 public class YugaByteAdminService {
   private YugaByteServiceConfig adminConfig;
+  private CatalogConfig catalogConfig;
   private ServiceInstanceRepository instanceRepository;
   private YugaByteConfigRepository yugaByteConfigRepository;
   private RestTemplate restTemplate;
+  private YugaByteTokenManager tokenManager;
+  private YugaWareCircuitBreaker circuitBreaker;
+  private YBConnectionCache connectionCache;
+  private YBEndpointProber endpointProber;
+  private ExecutorService yugaWareExecutor;
+  private ExecutorService bindingExecutor;
+
+  // Read-mostly YugaWare metadata, refreshed in the background once it is older than the
+  // configured TTL so that provisioning never waits on an expired entry.
+  private static final String SINGLETON_KEY = "all";
+  private LoadingCache<String, List<String>> releasesCache;
+  private LoadingCache<String, JsonNode> providersCache;
+  private LoadingCache<UUID, JsonNode> regionsCache;
+  private LoadingCache<UUID, JsonNode> accessKeysCache;
+
+  // Node endpoints per universe and API, these only change when a universe is resized so
+  // they are dropped whenever the universe changes state.
+  private Cache<String, List<HostAndPort>> universeEndpointCache;
+  private Cache<String, UniversePlacement> universePlacementCache;
+
+  // Universe status polls for the same universe share one in-flight fetch, and optionally
+  // reuse its result for a short while after it completes.
+  private final ConcurrentMap<String, CompletableFuture<UniverseStatus>> inflightStatusFetches =
+      new ConcurrentHashMap<>();
+  private Cache<String, UniverseStatus> universeStatusCache;
+  private final Counter statusFetchedCounter;
+  private final Counter statusCoalescedCounter;
+  private final Counter statusCachedCounter;
+
+  // Databases of the universe that bindings may not take over.
+  private static final Set<String> RESERVED_DATABASES = ImmutableSet.of(
+      "yugabyte", "postgres", "template0", "template1", "system_platform");
+
+  // The fields of credentials that belong to their role. The others say how to reach the
+  // universe, which can change after the role is created.
+  private static final Set<String> ROLE_CREDENTIAL_FIELDS = ImmutableSet.of(
+      "username", "password", "keyspace", "database");
 
-  private String authToken = null;
-  private String customerUUID = null;
   private static final Log logger = LogFactory.getLog(YugaByteAdminService.class);
 
   @Autowired
   public YugaByteAdminService(YugaByteServiceConfig adminConfig,
+                              CatalogConfig catalogConfig,
                               ServiceInstanceRepository instanceRepository,
                               YugaByteConfigRepository yugaByteConfigRepository,
-                              RestTemplate restTemplate) {
+                              RestTemplate restTemplate,
+                              @Qualifier("yugaWareExecutor") ExecutorService yugaWareExecutor,
+                              @Qualifier("bindingExecutor") ExecutorService bindingExecutor) {
     this.adminConfig = adminConfig;
+    this.catalogConfig = catalogConfig;
     this.instanceRepository = instanceRepository;
     this.yugaByteConfigRepository = yugaByteConfigRepository;
     this.restTemplate = restTemplate;
     this.restTemplate.setErrorHandler(new YugaByteServiceResponseHandler());
+    this.tokenManager = new YugaByteTokenManager(adminConfig, restTemplate);
+    this.circuitBreaker = new YugaWareCircuitBreaker(adminConfig);
+    this.connectionCache = new YBConnectionCache(adminConfig);
+    this.endpointProber = new YBEndpointProber(adminConfig);
+    this.yugaWareExecutor = yugaWareExecutor;
+    this.bindingExecutor = bindingExecutor;
+
+    this.releasesCache = buildMetadataCache("releases", adminConfig.releasesCacheTtlSecs,
+        yugaWareExecutor, key -> fetchReleases());
+    this.providersCache = buildMetadataCache("providers", adminConfig.providersCacheTtlSecs,
+        yugaWareExecutor, key -> fetchProviders());
+    this.regionsCache = buildMetadataCache("regions", adminConfig.regionsCacheTtlSecs,
+        yugaWareExecutor, this::fetchRegions);
+    this.accessKeysCache = buildMetadataCache("access_keys", adminConfig.accessKeysCacheTtlSecs,
+        yugaWareExecutor, this::fetchAccessKeys);
+
+    CacheBuilder<Object, Object> endpointCacheBuilder = CacheBuilder.newBuilder().recordStats();
+    if (adminConfig.universeEndpointsCacheTtlSecs > 0) {
+      endpointCacheBuilder.maximumSize(adminConfig.cacheMaxEntries)
+          .expireAfterWrite(adminConfig.universeEndpointsCacheTtlSecs, TimeUnit.SECONDS);
+    } else {
+      endpointCacheBuilder.maximumSize(0);
+    }
+    this.universeEndpointCache = endpointCacheBuilder.build();
+    this.universePlacementCache = endpointCacheBuilder.build();
+    GuavaCacheMetrics.monitor(Metrics.globalRegistry, universeEndpointCache,
+        "yugaware.universe_endpoints");
+    GuavaCacheMetrics.monitor(Metrics.globalRegistry, universePlacementCache,
+        "yugaware.universe_placements");
+
+    CacheBuilder<Object, Object> statusCacheBuilder = CacheBuilder.newBuilder();
+    if (adminConfig.universeStatusCacheTtlMs > 0) {
+      statusCacheBuilder.maximumSize(adminConfig.cacheMaxEntries)
+          .expireAfterWrite(adminConfig.universeStatusCacheTtlMs, TimeUnit.MILLISECONDS);
+    } else {
+      statusCacheBuilder.maximumSize(0);
+    }
+    this.universeStatusCache = statusCacheBuilder.build();
+    this.statusFetchedCounter =
+        Metrics.counter("yugabyte.admin.universe.status", "source", "fetched");
+    this.statusCoalescedCounter =
+        Metrics.counter("yugabyte.admin.universe.status", "source", "coalesced");
+    this.statusCachedCounter =
+        Metrics.counter("yugabyte.admin.universe.status", "source", "cached");
+    Gauge.builder("yugabyte.admin.universe.status.coalescing_ratio", this,
+        YugaByteAdminService::getStatusCoalescingRatio).register(Metrics.globalRegistry);
+  }
+
+  // Share of universe status polls that were answered without their own YugaWare call.
+  private double getStatusCoalescingRatio() {
+    double saved = statusCoalescedCounter.count() + statusCachedCounter.count();
+    double total = saved + statusFetchedCounter.count();
+    return total == 0 ? 0 : saved / total;
+  }
+
+  private <K, V> LoadingCache<K, V> buildMetadataCache(String name, long ttlSecs,
+                                                        ExecutorService executor,
+                                                        Function<K, V> loader) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+    if (ttlSecs > 0) {
+      builder.maximumSize(adminConfig.cacheMaxEntries)
+          .refreshAfterWrite(ttlSecs, TimeUnit.SECONDS)
+          .expireAfterWrite(Math.max(ttlSecs, adminConfig.cacheMaxStaleSecs), TimeUnit.SECONDS);
+    } else {
+      builder.maximumSize(0);
+    }
+    LoadingCache<K, V> cache = builder.build(
+        CacheLoader.asyncReloading(CacheLoader.from(loader::apply), executor));
+    GuavaCacheMetrics.monitor(Metrics.globalRegistry, cache, "yugaware." + name);
+    return cache;
+  }
+
+  private static <K, V> V getCached(LoadingCache<K, V> cache, K key) {
+    try {
+      return cache.getUnchecked(key);
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      throw CommonUtils.unwrap(e);
+    }
+  }
+
+  private static <K, V> V getCached(Cache<K, V> cache, K key, Callable<V> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      throw CommonUtils.unwrap(e);
+    }
+  }
+
+  public void invalidateMetadataCache() {
+    releasesCache.invalidateAll();
+    providersCache.invalidateAll();
+    regionsCache.invalidateAll();
+    accessKeysCache.invalidateAll();
+    universeEndpointCache.invalidateAll();
+    universePlacementCache.invalidateAll();
+    universeStatusCache.invalidateAll();
+  }
+
+  public void invalidateUniverseEndpoints(String universeUUID) {
+    for (YBClient.ClientType clientType : YBClient.ClientType.values()) {
+      universeEndpointCache.invalidate(getUniverseEndpointKey(clientType, universeUUID));
+      endpointProber.invalidate(getUniverseEndpointKey(clientType, universeUUID));
+    }
+    universePlacementCache.invalidate(universeUUID);
+  }
+
+  private static String getUniverseEndpointKey(YBClient.ClientType clientType,
+                                               String universeUUID) {
+    return universeUUID + "/" + clientType;
   }
 
-  private String getApiUrl(String endpoint) {
+  public Map<String, Object> getMetadataCacheStats() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("releases", getCacheStats(releasesCache));
+    stats.put("providers", getCacheStats(providersCache));
+    stats.put("regions", getCacheStats(regionsCache));
+    stats.put("access_keys", getCacheStats(accessKeysCache));
+    stats.put("universe_endpoints", getCacheStats(universeEndpointCache));
+    stats.put("universe_placements", getCacheStats(universePlacementCache));
+    Map<String, Object> statusStats = new HashMap<>();
+    statusStats.put("size", universeStatusCache.size());
+    statusStats.put("fetchCount", (long) statusFetchedCounter.count());
+    statusStats.put("coalescedCount", (long) statusCoalescedCounter.count());
+    statusStats.put("cachedCount", (long) statusCachedCounter.count());
+    statusStats.put("coalescingRatio", getStatusCoalescingRatio());
+    stats.put("universe_status", statusStats);
+    return stats;
+  }
+
+  private static Map<String, Object> getCacheStats(Cache<?, ?> cache) {
+    CacheStats cacheStats = cache.stats();
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("size", cache.size());
+    stats.put("hitCount", cacheStats.hitCount());
+    stats.put("missCount", cacheStats.missCount());
+    stats.put("loadFailureCount", cacheStats.loadExceptionCount());
+    return stats;
+  }
+
+  private String getApiUrl(YugaByteTokenManager.Credentials credentials, String endpoint) {
     String url = String.format("http://%s:%s/api",
         adminConfig.hostname, adminConfig.port);
 
+    String customerUUID = credentials.getCustomerUUID();
     if (customerUUID != null && !customerUUID.isEmpty()) {
       url = url.concat(String.format("/customers/%s", customerUUID));
     }
@@ -84,10 +309,11 @@ public class YugaByteAdminService {
     return url;
   }
 
-  private HttpEntity getEntity(JsonNode bodyJson) {
+  private HttpEntity getEntity(YugaByteTokenManager.Credentials credentials, JsonNode bodyJson) {
     HttpHeaders headers = new HttpHeaders();
     headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
     headers.setContentType(MediaType.APPLICATION_JSON);
+    String authToken = credentials.getAuthToken();
     if (authToken != null && !authToken.isEmpty()) {
       headers.set("X-AUTH-TOKEN", authToken);
     }
@@ -100,14 +326,11 @@ public class YugaByteAdminService {
   }
 
   private ResponseEntity<JsonNode> doGet(String endpoint)  {
-    validateAndRefreshToken();
     return makeRequest(endpoint, HttpMethod.GET, null);
   }
 
   private String doGetRaw(String endpoint) {
-    validateAndRefreshToken();
-    HttpEntity<JsonNode> entity = getEntity(null);
-    ResponseEntity<String> response = restTemplate.exchange(getApiUrl(endpoint), HttpMethod.GET, entity, String.class);
+    ResponseEntity<String> response = makeRequest(endpoint, HttpMethod.GET, null, String.class);
     if (response.getStatusCode() == HttpStatus.OK) {
       return response.getBody();
     } else {
@@ -117,18 +340,51 @@ public class YugaByteAdminService {
   }
 
   private ResponseEntity<JsonNode> doPost(String endpoint, JsonNode params) {
-    validateAndRefreshToken();
     return makeRequest(endpoint, HttpMethod.POST, params);
   }
 
   private ResponseEntity<JsonNode> doDelete(String endpoint) {
-    validateAndRefreshToken();
     return makeRequest(endpoint, HttpMethod.DELETE, null);
   }
 
   private ResponseEntity<JsonNode> makeRequest(String endpoint, HttpMethod method, JsonNode bodyJson) {
-    return restTemplate.exchange(getApiUrl(endpoint), method,
-        getEntity(bodyJson), JsonNode.class);
+    return makeRequest(endpoint, method, bodyJson, JsonNode.class);
+  }
+
+  private <T> ResponseEntity<T> makeRequest(String endpoint, HttpMethod method, JsonNode bodyJson,
+                                            Class<T> responseType) {
+    return withCredentials(endpoint, method, credentials -> restTemplate.exchange(
+        getApiUrl(credentials, endpoint), method, getEntity(credentials, bodyJson), responseType));
+  }
+
+  private <T> T withCredentials(String endpoint, HttpMethod method,
+                                Function<YugaByteTokenManager.Credentials, T> request) {
+    return circuitBreaker.call(method + " " + endpoint, () -> {
+      YugaByteTokenManager.Credentials credentials = tokenManager.getCredentials();
+      try {
+        return request.apply(credentials);
+      } catch (YugaByteAuthenticationException ae) {
+        // The cached token was rejected, most likely because it expired. Login again and
+        // replay the request once, if it still fails the error goes back to the caller.
+        logger.info("YugaWare rejected the auth token, refreshing it and retrying " + method +
+                    " " + endpoint);
+        return request.apply(tokenManager.refresh(credentials));
+      }
+    });
+  }
+
+  public CircuitBreaker.State getCircuitBreakerState() {
+    return circuitBreaker.getState();
+  }
+
+  public void resetCircuitBreaker() {
+    circuitBreaker.reset();
+  }
+
+  @PreDestroy
+  public void closeConnections() {
+    connectionCache.close();
+    endpointProber.close();
   }
 
   private JsonNode getResponseOrThrow(ResponseEntity<JsonNode> responseEntity,
@@ -142,39 +398,11 @@ public class YugaByteAdminService {
     }
   }
 
-  private void validateAndRefreshToken() {
-    boolean invalidToken = (authToken == null);
-    if (!invalidToken) {
-      // If we have a authToken lets validate and confirm by hitting the customer
-      // endpoint.
-      try {
-        makeRequest("", HttpMethod.GET, null);
-      } catch (YugaByteServiceException ye) {
-          resetAuthToken();
-          invalidToken = true;
-      }
-    }
-
-    // If the token we have is invalid, lets login and fetch the new token.
-    if (invalidToken) {
-      ObjectMapper mapper = new ObjectMapper();
-      ObjectNode authParams = mapper.createObjectNode();
-      authParams.put("email", this.adminConfig.user);
-      authParams.put("password", this.adminConfig.password);
-      ResponseEntity<JsonNode> authResponse = makeRequest("login", HttpMethod.POST, authParams);
-      JsonNode responseBody = getResponseOrThrow(
-          authResponse,
-          "Unable to authenticate with YugaWare");
-      if (!responseBody.has("authToken") ||
-          !responseBody.has("customerUUID")) {
-        throw new YugaByteServiceException("Unable to authenticate with YugaWare");
-      }
-      authToken = responseBody.get("authToken").asText();
-      customerUUID = responseBody.get("customerUUID").asText();
-    }
+  public List<String> getReleases() {
+    return getCached(releasesCache, SINGLETON_KEY);
   }
 
-  public List<String> getReleases() {
+  private List<String> fetchReleases() {
     ResponseEntity<JsonNode> responseEntity = doGet("releases");
     JsonNode response = getResponseOrThrow(responseEntity,
         "Unable to fetch releases metadata");
@@ -184,24 +412,36 @@ public class YugaByteAdminService {
       throw new YugaByteServiceException("Unable to fetch YugaByte release metadata");
     }
     Collections.sort(releases, Collections.reverseOrder());
-    return releases;
+    return ImmutableList.copyOf(releases);
   }
 
   public void resetAuthToken() {
-    authToken = null;
-    customerUUID = null;
+    tokenManager.reset();
   }
 
+  // The cached documents are shared, so callers get their own copy to read from.
   public JsonNode getProviders() {
-    return getResponseOrThrow(doGet("providers"), "Unable to fetch providers");
+    return getCached(providersCache, SINGLETON_KEY).deepCopy();
   }
 
   public JsonNode getRegions(UUID providerUUID) {
+    return getCached(regionsCache, providerUUID).deepCopy();
+  }
+
+  public JsonNode getAccessKeys(UUID providerUUID) {
+    return getCached(accessKeysCache, providerUUID).deepCopy();
+  }
+
+  private JsonNode fetchProviders() {
+    return getResponseOrThrow(doGet("providers"), "Unable to fetch providers");
+  }
+
+  private JsonNode fetchRegions(UUID providerUUID) {
     return getResponseOrThrow(doGet(String.format("providers/%s/regions", providerUUID)),
         "Unable to fetch regions");
   }
 
-  public JsonNode getAccessKeys(UUID providerUUID) {
+  private JsonNode fetchAccessKeys(UUID providerUUID) {
     return getResponseOrThrow(doGet(String.format("providers/%s/access_keys", providerUUID)),
         "Unable to fetch access keys");
   }
@@ -221,22 +461,206 @@ public class YugaByteAdminService {
         "Unable to fetch universe " + universeUUID);
   }
 
+  /**
+   * Returns just the state machine fields of the universe, streamed out of the response
+   * without building the whole universe document. Concurrent calls for the same universe
+   * are served by a single YugaWare request.
+   */
+  public UniverseStatus getUniverseStatus(String universeUUID) {
+    UniverseStatus cached = universeStatusCache.getIfPresent(universeUUID);
+    if (cached != null) {
+      statusCachedCounter.increment();
+      return cached;
+    }
+    CompletableFuture<UniverseStatus> fetch = new CompletableFuture<>();
+    CompletableFuture<UniverseStatus> inflight =
+        inflightStatusFetches.putIfAbsent(universeUUID, fetch);
+    if (inflight != null) {
+      statusCoalescedCounter.increment();
+      try {
+        return inflight.join();
+      } catch (CompletionException e) {
+        throw CommonUtils.unwrap(e);
+      }
+    }
+    statusFetchedCounter.increment();
+    try {
+      UniverseStatus status = fetchUniverseStatus(universeUUID);
+      // Cache before leaving the in-flight map so that no poll sneaks in a second fetch.
+      universeStatusCache.put(universeUUID, status);
+      fetch.complete(status);
+      return status;
+    } catch (RuntimeException | Error e) {
+      fetch.completeExceptionally(e);
+      throw e;
+    } finally {
+      inflightStatusFetches.remove(universeUUID, fetch);
+    }
+  }
+
+  private UniverseStatus fetchUniverseStatus(String universeUUID) {
+    return streamGet(String.format("universes/%s", universeUUID),
+        "Unable to fetch universe " + universeUUID, UniverseStatus::parse);
+  }
+
+  /**
+   * Returns the status of every universe of the customer, keyed by universe UUID, from a
+   * single list call.
+   */
+  public Map<String, UniverseStatus> getUniverseStatuses() {
+    List<UniverseStatus> statuses = streamGet("universes", "Unable to fetch universes",
+        UniverseStatus::parseList);
+    Map<String, UniverseStatus> statusByUUID = new HashMap<>();
+    for (UniverseStatus status : statuses) {
+      statusByUUID.put(status.getUniverseUUID(), status);
+    }
+    return statusByUUID;
+  }
+
+  /**
+   * Returns the UUID of the customer's universe with the given name, or null if there is none.
+   */
+  public String findUniverseUUID(String universeName) {
+    for (UniverseStatus status : getUniverseStatuses().values()) {
+      if (universeName.equals(status.getName())) {
+        return status.getUniverseUUID();
+      }
+    }
+    return null;
+  }
+
+  private interface StreamParser<T> {
+    T parse(InputStream body) throws IOException;
+  }
+
+  private <T> T streamGet(String endpoint, String exceptionMessage, StreamParser<T> parser) {
+    try {
+      return doStreamGet(endpoint, exceptionMessage, parser);
+    } catch (HttpServerErrorException e) {
+      logger.warn("YugaWare API returned status: " + e.getRawStatusCode() + " for " + endpoint);
+      throw new YugaByteServiceException(exceptionMessage);
+    }
+  }
+
+  private <T> T doStreamGet(String endpoint, String exceptionMessage, StreamParser<T> parser) {
+    return withCredentials(endpoint, HttpMethod.GET, credentials -> {
+      HttpHeaders headers = getEntity(credentials, null).getHeaders();
+      return restTemplate.execute(getApiUrl(credentials, endpoint), HttpMethod.GET,
+          request -> request.getHeaders().putAll(headers),
+          response -> {
+            // Raised as a RestClientException so that the circuit breaker counts it.
+            if (response.getStatusCode().is5xxServerError()) {
+              throw new HttpServerErrorException(response.getStatusCode());
+            }
+            if (response.getStatusCode() != HttpStatus.OK) {
+              logger.warn("YugaWare API returned status: " + response.getStatusCode().value() +
+                          " for " + endpoint);
+              throw new YugaByteServiceException(exceptionMessage);
+            }
+            try {
+              return parser.parse(response.getBody());
+            } catch (JsonProcessingException e) {
+              logger.warn("Unable to parse response for " + endpoint + ": " + e.getMessage());
+              throw new YugaByteServiceException(exceptionMessage);
+            }
+          });
+    });
+  }
+
   public JsonNode deleteUniverse(String universeUUID) {
+    universeStatusCache.invalidate(universeUUID);
+    connectionCache.evictUniverse(universeUUID);
+    // A universe recreated with the same UUID would not have the system roles or the YEDIS
+    // password anymore.
+    List<String> universeKeys = new ArrayList<>(Arrays.asList(
+        YEDISClient.getAdminCredentialKey(universeUUID),
+        YEDISClient.getPendingCredentialKey(universeUUID)));
+    for (YBClient.ClientType clientType : YBClient.ClientType.values()) {
+      universeKeys.add(YBClient.getSystemRolesKey(clientType, universeUUID));
+    }
+    for (String key : universeKeys) {
+      if (yugaByteConfigRepository.existsById(key)) {
+        yugaByteConfigRepository.deleteById(key);
+      }
+    }
     return getResponseOrThrow(doDelete(String.format("universes/%s", universeUUID)),
         "Unable to delete universe " + universeUUID);
   }
 
-  private String getUniverseUUIDFromServiceInstance(String instanceId) {
+  private ServiceInstance getServiceInstance(String instanceId) {
     Optional<ServiceInstance> serviceInstance = instanceRepository.findById(instanceId);
 
     if (!serviceInstance.isPresent()) {
       throw new ServiceInstanceDoesNotExistException(instanceId);
     }
-    ServiceInstance si = serviceInstance.get();
-    return si.getUniverseUUID();
+    return serviceInstance.get();
+  }
+
+  /**
+   * Creates the database and keyspace of a shared plan tenant. Safe to repeat.
+   */
+  public void createTenant(String universeUUID, String tenant) {
+    for (YBClient.TenantClientType tenantType : YBClient.TenantClientType.values()) {
+      List<HostAndPort> hostAndPorts =
+          getEndpointForServiceType(tenantType.getClientType(), universeUUID);
+      tenantType.getInstance(universeUUID, hostAndPorts,
+          yugaByteConfigRepository, connectionCache).createTenant(tenant);
+    }
+  }
+
+  /**
+   * Drops the database and keyspace of a shared plan tenant, along with all of its data.
+   */
+  public void deleteTenant(String universeUUID, String tenant) {
+    for (YBClient.TenantClientType tenantType : YBClient.TenantClientType.values()) {
+      List<HostAndPort> hostAndPorts =
+          getEndpointForServiceType(tenantType.getClientType(), universeUUID);
+      tenantType.getInstance(universeUUID, hostAndPorts,
+          yugaByteConfigRepository, connectionCache).deleteTenant(tenant);
+    }
+  }
+
+  public List<HostAndPort> getEndpointForServiceType(YBClient.ClientType serviceType,
+                                                    String universeUUID) {
+    return getCached(universeEndpointCache, getUniverseEndpointKey(serviceType, universeUUID),
+        () -> fetchEndpointForServiceType(serviceType, universeUUID));
+  }
+
+  public UniversePlacement getUniversePlacement(String universeUUID) {
+    return getCached(universePlacementCache, universeUUID,
+        () -> UniversePlacement.fromUniverse(getUniverse(universeUUID)));
+  }
+
+  // Credentials are still usable without the placement of the nodes, so a failed lookup only
+  // costs the locality hints.
+  private Optional<UniversePlacement> findUniversePlacement(String universeUUID) {
+    if (universeUUID == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(getUniversePlacement(universeUUID));
+    } catch (RuntimeException e) {
+      logger.warn("Unable to look up the placement of universe " + universeUUID + ": " +
+                  e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private static Map<String, String> getYCQLLocality(List<HostAndPort> hostAndPorts,
+                                                     UniversePlacement placement,
+                                                     Map<String, Object> parameters) {
+    Object localRegion = parameters == null ? null : parameters.get("local_region");
+    if (localRegion != null && placement.getNodes().stream()
+        .noneMatch(node -> node.getRegion().equals(localRegion.toString()))) {
+      throw new YugaByteServiceException("The universe has no nodes in local_region " +
+                                         localRegion);
+    }
+    return YCQLClient.getLocalityCredentials(hostAndPorts, placement,
+        localRegion == null ? null : localRegion.toString());
   }
 
-  private List<HostAndPort> getEndpointForServiceType(YBClient.ClientType serviceType, String universeUUID) {
+  private List<HostAndPort> fetchEndpointForServiceType(YBClient.ClientType serviceType,
+                                                        String universeUUID) {
     String url = null;
     switch (serviceType) {
       case YCQL:
@@ -250,43 +674,332 @@ public class YugaByteAdminService {
         break;
     }
     String serverEndpointString =  doGetRaw(url);
-    return CommonUtils.convertToHostPorts(
+    return ImmutableList.copyOf(CommonUtils.convertToHostPorts(
         serverEndpointString.replaceAll("^\"|\"$", "")
-    );
+    ));
   }
 
   public Map<String, Object> getUniverseServiceEndpoints(CreateServiceInstanceBindingRequest request) {
-    String universeUUID = getUniverseUUIDFromServiceInstance(request.getServiceInstanceId());
+    return getUniverseServiceEndpoints(request, (clientType, parameters) -> Optional.empty());
+  }
+
+  /**
+   * Creates the credentials of a binding for each API, taking the role from pooledCredentials
+   * instead where it has one.
+   */
+  public Map<String, Object> getUniverseServiceEndpoints(
+      CreateServiceInstanceBindingRequest request,
+      BiFunction<YBClient.ClientType, Map<String, Object>, Optional<Map<String, String>>>
+          pooledCredentials) {
+    ServiceInstance si = getServiceInstance(request.getServiceInstanceId());
+    String universeUUID = si.getUniverseUUID();
+    Map<String, Object> parameters = getBindingParameters(si, request.getParameters());
+    Set<YBClient.ClientType> clientTypes = getBindingClientTypes(si, parameters);
+    checkSchemaParameters(si, parameters, clientTypes);
+    // Each API needs its own endpoint lookup and credential DDL, none of which depend on
+    // the other APIs, so provision them all at once.
+    Map<YBClient.ClientType, CompletableFuture<Map<String, String>>> pending =
+        new EnumMap<>(YBClient.ClientType.class);
+    for (YBClient.ClientType clientType : clientTypes) {
+      try {
+        pending.put(clientType, CompletableFuture.supplyAsync(
+            () -> pooledCredentials.apply(clientType, parameters)
+                .map(role -> completeCredentials(clientType, universeUUID, parameters, role))
+                .orElseGet(() -> createCredentials(clientType, universeUUID, parameters)),
+            bindingExecutor));
+      } catch (RejectedExecutionException e) {
+        pending.forEach((submitted, credentials) ->
+            dropLateCredentials(submitted, universeUUID, credentials));
+        Metrics.counter("yugabyte.binding.rejected").increment();
+        throw new YugaByteServiceException("Too many bindings in progress, try again later");
+      }
+    }
+
     Map<String, Object> endpoints = new HashMap<>();
-    for (YBClient.ClientType clientType : YBClient.ClientType.values()) {
-      List<HostAndPort> hostAndPorts = getEndpointForServiceType(clientType, universeUUID);
-      YBClient ybClient = clientType.getInstance(hostAndPorts, yugaByteConfigRepository);
+    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(adminConfig.bindingTimeoutSecs);
+    for (Map.Entry<YBClient.ClientType, CompletableFuture<Map<String, String>>> entry :
+        pending.entrySet()) {
+      String api = entry.getKey().name().toLowerCase();
       try {
-        endpoints.put(clientType.name().toLowerCase(), ybClient.getCredentials(request.getParameters()));
-      } catch (Exception e) {
-        logger.warn("Unable to add credentials for " + clientType.name().toLowerCase(), e);
+        long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+        endpoints.put(api, entry.getValue().get(remainingNanos, TimeUnit.NANOSECONDS));
+      } catch (TimeoutException e) {
+        logger.warn("Timed out after " + adminConfig.bindingTimeoutSecs +
+                    "s adding credentials for " + api);
+        dropLateCredentials(entry.getKey(), universeUUID, entry.getValue());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        pending.forEach((clientType, credentials) ->
+            dropLateCredentials(clientType, universeUUID, credentials));
+        throw new YugaByteServiceException("Interrupted while creating credentials");
+      } catch (ExecutionException e) {
+        logger.warn("Unable to add credentials for " + api, e.getCause());
       }
     }
+    if (endpoints.isEmpty()) {
+      throw new YugaByteServiceException("Unable to create credentials for universe " +
+                                         universeUUID);
+    }
     return endpoints;
   }
 
-  public void deleteServiceBindingCredentials(ServiceBinding serviceBinding) {
-    serviceBinding.getCredentials().forEach((endpoint, credentials) -> {
-      ObjectMapper mapper = new ObjectMapper();
-      Map<String, String> credentialMap = mapper.convertValue(credentials, Map.class);
-      String[] hosts = credentialMap.get("host").split(",");
-      List<HostAndPort> hostAndPorts = new ArrayList<>();
-      hostAndPorts.add(
-          HostAndPort.fromParts(
-              hosts[0],
-              Integer.parseInt(credentialMap.get("port"))
-          )
-      );
-      YBClient ybClient = YBClient.ClientType.valueOf(endpoint.toUpperCase()).getInstance(
-          hostAndPorts,
-          yugaByteConfigRepository
-      );
-      ybClient.deleteAuth(credentialMap);
+  // The role DDL can't be interrupted, so credentials that the binding gave up waiting for are
+  // dropped once they have been created, instead of being left behind.
+  private void dropLateCredentials(YBClient.ClientType clientType, String universeUUID,
+                                   CompletableFuture<Map<String, String>> credentials) {
+    credentials.thenAcceptAsync(late -> {
+      String result = "failure";
+      try {
+        deleteCredentials(clientType, universeUUID, late);
+        result = "success";
+      } catch (RuntimeException e) {
+        logger.warn("Unable to drop the late " + clientType + " credentials of universe " +
+                    universeUUID, e);
+      } finally {
+        Metrics.counter("yugabyte.binding.late_credentials",
+            "api", clientType.name().toLowerCase(), "result", result).increment();
+      }
+    }, yugaWareExecutor);
+  }
+
+  // Checked up front, so that a bad keyspace, database or tables parameter fails the binding
+  // before any role is created.
+  private static void checkSchemaParameters(ServiceInstance si, Map<String, Object> parameters,
+                                            Set<YBClient.ClientType> clientTypes) {
+    Object keyspace = parameters.get("keyspace");
+    Object database = parameters.get("database");
+    Object tables = parameters.get("tables");
+    if (keyspace == null && database == null && tables == null) {
+      return;
+    }
+    if (si.isShared()) {
+      throw new YugaByteServiceException(
+          "Instances of shared plans already have a keyspace and database of their own");
+    }
+    if (tables != null && (keyspace == null) == (database == null)) {
+      throw new YugaByteServiceException("tables needs exactly one of keyspace or database");
+    }
+    if (keyspace != null && !clientTypes.contains(YBClient.ClientType.YCQL)) {
+      throw new YugaByteServiceException("keyspace needs the YCQL API, apis are " + clientTypes);
+    }
+    if (database != null && !clientTypes.contains(YBClient.ClientType.YSQL)) {
+      throw new YugaByteServiceException("database needs the YSQL API, apis are " + clientTypes);
+    }
+    try {
+      if (keyspace != null &&
+          TableSpec.checkIdentifier("keyspace", keyspace).startsWith("system")) {
+        throw new IllegalArgumentException("keyspace " + keyspace + " is reserved");
+      }
+      if (database != null &&
+          RESERVED_DATABASES.contains(TableSpec.checkIdentifier("database", database))) {
+        throw new IllegalArgumentException("database " + database + " is reserved");
+      }
+      if (database != null &&
+          ((String) database).length() > YSQLClient.MAX_OWNED_DATABASE_LENGTH) {
+        throw new IllegalArgumentException("database must be at most " +
+                                           YSQLClient.MAX_OWNED_DATABASE_LENGTH + " characters");
+      }
+      TableSpec.parse(tables);
+    } catch (IllegalArgumentException e) {
+      throw new YugaByteServiceException(e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the APIs that a binding gets credentials for: those named by its apis parameter,
+   * else by the plan, else all of them. Tenants only get the APIs with a namespace of their own.
+   */
+  public Set<YBClient.ClientType> getBindingClientTypes(ServiceInstance si,
+                                                        Map<String, Object> parameters) {
+    Set<YBClient.ClientType> available =
+        si.isShared() ? YBClient.TENANT_CLIENT_TYPES : EnumSet.allOf(YBClient.ClientType.class);
+    Object requested = parameters == null ? null : parameters.get("apis");
+    if (requested != null) {
+      Set<YBClient.ClientType> clientTypes = parseClientTypes(requested);
+      if (clientTypes.isEmpty()) {
+        throw new YugaByteServiceException("apis must name at least one API");
+      }
+      if (!available.containsAll(clientTypes)) {
+        throw new YugaByteServiceException("Plan " + si.getPlanId() + " only offers " +
+                                           available);
+      }
+      return clientTypes;
+    }
+    PlanMetadata plan = catalogConfig.getPlan(si.getPlanId());
+    if (plan == null || plan.getApis() == null) {
+      return available;
+    }
+    Set<YBClient.ClientType> clientTypes = parseClientTypes(plan.getApis());
+    clientTypes.retainAll(available);
+    if (clientTypes.isEmpty()) {
+      throw new YugaByteServiceException("Plan " + si.getPlanId() + " has none of the APIs " +
+                                         available + " in its apis " + plan.getApis());
+    }
+    return clientTypes;
+  }
+
+  private static Set<YBClient.ClientType> parseClientTypes(Object apis) {
+    try {
+      return YBClient.ClientType.parse(apis);
+    } catch (IllegalArgumentException e) {
+      throw new YugaByteServiceException(e.getMessage());
+    }
+  }
+
+  public Map<String, Object> getBindingParameters(ServiceInstance si,
+                                                  Map<String, Object> parameters) {
+    Map<String, Object> bindingParameters =
+        parameters == null ? new HashMap<>() : new HashMap<>(parameters);
+    if (si.isShared()) {
+      bindingParameters.put("tenant", si.getTenant());
+    }
+    return bindingParameters;
+  }
+
+  public Map<String, String> createCredentials(YBClient.ClientType clientType,
+                                               String universeUUID,
+                                               Map<String, Object> parameters) {
+    long startNanos = System.nanoTime();
+    String result = "failure";
+    try {
+      Map<String, String> credentials = buildCredentials(clientType, universeUUID, parameters,
+          ybClient -> ybClient.getCredentials(parameters));
+      result = "success";
+      return credentials;
+    } finally {
+      Metrics.timer("yugabyte.binding.credentials",
+          "api", clientType.name().toLowerCase(), "result", result)
+          .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Adds how to reach the universe as of now to the credentials of a role created earlier, the
+   * same way createCredentials does for a new role.
+   */
+  public Map<String, String> completeCredentials(YBClient.ClientType clientType,
+                                                 String universeUUID,
+                                                 Map<String, Object> parameters,
+                                                 Map<String, String> role) {
+    return buildCredentials(clientType, universeUUID, parameters, ybClient -> {
+      Map<String, String> credentials = getRoleCredentials(role);
+      credentials.putAll(ybClient.getConnectionCredentials());
+      return credentials;
     });
   }
+
+  /**
+   * Returns the fields of the credentials that belong to their role, such as its username and
+   * password.
+   */
+  public static Map<String, String> getRoleCredentials(Map<String, String> credentials) {
+    Map<String, String> role = new HashMap<>(credentials);
+    role.keySet().retainAll(ROLE_CREDENTIAL_FIELDS);
+    return role;
+  }
+
+  private Map<String, String> buildCredentials(YBClient.ClientType clientType,
+                                               String universeUUID,
+                                               Map<String, Object> parameters,
+                                               Function<YBClient, Map<String, String>> role) {
+    // Apps, and the admin connection below, try the nodes in the order they are listed. Cached
+    // YSQL pools and YCQL sessions are kept per node they were opened to, so a new order gets
+    // one to the new first node, and YEDIS tries the nodes in turn.
+    List<HostAndPort> hostAndPorts = endpointProber.order(
+        getUniverseEndpointKey(clientType, universeUUID),
+        getEndpointForServiceType(clientType, universeUUID));
+    YBClient ybClient = clientType.getInstance(universeUUID, hostAndPorts,
+        yugaByteConfigRepository, connectionCache);
+    Optional<UniversePlacement> placement = clientType == YBClient.ClientType.YEDIS
+        ? Optional.empty()
+        : findUniversePlacement(universeUUID);
+    // Checked before the role is created, since it fails on a bad local_region.
+    Map<String, String> locality =
+        clientType == YBClient.ClientType.YCQL && placement.isPresent()
+            ? getYCQLLocality(hostAndPorts, placement.get(), parameters)
+            : Collections.emptyMap();
+    Map<String, String> credentials = role.apply(ybClient);
+    credentials.putAll(locality);
+    if (clientType == YBClient.ClientType.YSQL) {
+      credentials.putAll(YSQLClient.getConnectionUrls(credentials,
+          placement.map(UniversePlacement::getTopologyKeys).orElse(Collections.emptyList())));
+    }
+    return credentials;
+  }
+
+  public void deleteServiceBindingCredentials(ServiceBinding serviceBinding) {
+    deleteServiceBindingCredentials(Collections.singletonList(serviceBinding));
+  }
+
+  /**
+   * Drops the roles of the bindings with one client call per universe and API, so that
+   * unbinding many bindings doesn't pay for a session per binding.
+   */
+  public void deleteServiceBindingCredentials(List<ServiceBinding> serviceBindings) {
+    ObjectMapper mapper = new ObjectMapper();
+    Map<String, Optional<String>> universeUUIDs = new HashMap<>();
+    Map<Optional<String>, Map<YBClient.ClientType, List<Map<String, String>>>> grouped =
+        new HashMap<>();
+    for (ServiceBinding serviceBinding : serviceBindings) {
+      Optional<String> universeUUID = universeUUIDs.computeIfAbsent(
+          serviceBinding.getServiceInstanceId(),
+          instanceId -> instanceRepository.findById(instanceId)
+              .map(ServiceInstance::getUniverseUUID));
+      serviceBinding.getCredentials().forEach((endpoint, credentials) ->
+          grouped.computeIfAbsent(universeUUID, u -> new EnumMap<>(YBClient.ClientType.class))
+              .computeIfAbsent(YBClient.ClientType.valueOf(endpoint.toUpperCase()),
+                               t -> new ArrayList<>())
+              .add(mapper.convertValue(credentials,
+                                       new TypeReference<Map<String, String>>() {})));
+    }
+    grouped.forEach((universeUUID, byClientType) -> byClientType.forEach(
+        (clientType, credentialsList) ->
+            deleteCredentials(clientType, universeUUID.orElse(null), credentialsList)));
+  }
+
+  public void deleteCredentials(YBClient.ClientType clientType, String universeUUID,
+                                Map<String, String> credentials) {
+    getClient(clientType, universeUUID, credentials).deleteAuth(credentials);
+  }
+
+  public void deleteCredentials(YBClient.ClientType clientType, String universeUUID,
+                                List<Map<String, String>> credentialsList) {
+    long startNanos = System.nanoTime();
+    String result = "failure";
+    try {
+      getClient(clientType, universeUUID, credentialsList.get(0)).deleteAuths(credentialsList);
+      result = "success";
+    } finally {
+      String api = clientType.name().toLowerCase();
+      Metrics.timer("yugabyte.binding.bulk_deletes", "api", api, "result", result)
+          .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+      Metrics.counter("yugabyte.binding.bulk_deleted_roles", "api", api, "result", result)
+          .increment(credentialsList.size());
+    }
+  }
+
+  // Connects to the universe through the host that the credentials were created on.
+  private YBClient getClient(YBClient.ClientType clientType, String universeUUID,
+                             Map<String, String> credentials) {
+    // Pooled credentials only have their role.
+    if (!credentials.containsKey("host")) {
+      return clientType.getInstance(universeUUID,
+          getEndpointForServiceType(clientType, universeUUID), yugaByteConfigRepository,
+          connectionCache);
+    }
+    String[] hosts = credentials.get("host").split(",");
+    List<HostAndPort> hostAndPorts = new ArrayList<>();
+    hostAndPorts.add(
+        HostAndPort.fromParts(
+            hosts[0],
+            Integer.parseInt(credentials.get("port"))
+        )
+    );
+    return clientType.getInstance(
+        universeUUID,
+        hostAndPorts,
+        yugaByteConfigRepository,
+        connectionCache
+    );
+  }
 }
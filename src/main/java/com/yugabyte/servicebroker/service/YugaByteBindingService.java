@@ -13,6 +13,7 @@
 package com.yugabyte.servicebroker.service;
 
 import com.yugabyte.servicebroker.model.ServiceBinding;
+import com.yugabyte.servicebroker.model.ServiceInstance;
 import com.yugabyte.servicebroker.repository.ServiceBindingRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingDoesNotExistException;
@@ -26,6 +27,7 @@ import org.springframework.cloud.servicebroker.model.binding.GetServiceInstanceB
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -37,6 +39,9 @@ public class YugaByteBindingService implements ServiceInstanceBindingService {
   @Autowired
   private YugaByteAdminService adminService;
 
+  @Autowired
+  private YugaByteCredentialPoolService credentialPoolService;
+
   public YugaByteBindingService(ServiceBindingRepository bindingRepository) {
     this.bindingRepository = bindingRepository;
   }
@@ -54,7 +59,9 @@ public class YugaByteBindingService implements ServiceInstanceBindingService {
           .credentials(binding.get().getCredentials());
     } else {
       Map<String, Object> serviceEndpoints = adminService.getUniverseServiceEndpoints(
-          request
+          request,
+          (clientType, parameters) -> credentialPoolService.claim(
+              request.getServiceInstanceId(), clientType, parameters)
       );
       ServiceBinding serviceBinding =
           new ServiceBinding(request.getBindingId(), request.getServiceInstanceId(), serviceEndpoints);
@@ -95,4 +102,19 @@ public class YugaByteBindingService implements ServiceInstanceBindingService {
       throw new ServiceInstanceBindingDoesNotExistException(bindingId);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Forgets every binding of an instance that is being deleted. A dedicated universe takes the
+   * roles of its bindings with it, tenants of a shared universe have theirs dropped in a batch.
+   */
+  public void deleteServiceInstanceBindings(ServiceInstance si) {
+    if (si.isShared()) {
+      List<ServiceBinding> bindings =
+          bindingRepository.findByServiceInstanceId(si.getServiceInstanceId());
+      if (!bindings.isEmpty()) {
+        adminService.deleteServiceBindingCredentials(bindings);
+      }
+    }
+    bindingRepository.deleteByServiceInstanceId(si.getServiceInstanceId());
+  }
+}
@@ -0,0 +1,202 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.model.PooledCredential;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.repository.PooledCredentialRepository;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import com.yugabyte.servicebroker.utils.YBClient;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps credential_pool_size credentials per API created ahead of time for the LIVE instances
+ * of a plan, so that creating a binding only has to take one instead of waiting on the role
+ * DDL. The pool is filled with credentials for the default role, bindings that ask for
+ * anything else get theirs created as usual.
+ *
+ * Only the role of pooled credentials is kept, that is its username and password. The hosts,
+ * URLs and locality hints of a binding are worked out when it claims them, so they follow the
+ * universe as it is then.
+ */
+@Service
+public class YugaByteCredentialPoolService {
+  private static final Log logger = LogFactory.getLog(YugaByteCredentialPoolService.class);
+
+  static final String DEFAULT_ROLE = "default";
+
+  private YugaByteServiceConfig adminConfig;
+  private CatalogConfig catalogConfig;
+  private YugaByteAdminService adminService;
+  private ServiceInstanceRepository instanceRepository;
+  private PooledCredentialRepository credentialRepository;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public YugaByteCredentialPoolService(YugaByteServiceConfig adminConfig,
+                                       CatalogConfig catalogConfig,
+                                       YugaByteAdminService adminService,
+                                       ServiceInstanceRepository instanceRepository,
+                                       PooledCredentialRepository credentialRepository) {
+    this.adminConfig = adminConfig;
+    this.catalogConfig = catalogConfig;
+    this.adminService = adminService;
+    this.instanceRepository = instanceRepository;
+    this.credentialRepository = credentialRepository;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!adminConfig.credentialPoolEnabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("credential-pool")
+        .setDaemon(true)
+        .build());
+    scheduler.scheduleWithFixedDelay(this::refillQuietly, 0,
+        adminConfig.credentialPoolRefillIntervalSecs, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Hands out the role of pooled credentials for an API of the instance, if the pool has some
+   * that were created for a binding with these parameters.
+   */
+  public Optional<Map<String, String>> claim(String instanceId, YBClient.ClientType clientType,
+                                             Map<String, Object> parameters) {
+    String role = getRole(parameters);
+    if (!adminConfig.credentialPoolEnabled || role == null) {
+      return Optional.empty();
+    }
+    String api = clientType.name().toLowerCase();
+    for (PooledCredential credential :
+        credentialRepository.findTop5ByInstanceIdAndApiAndRoleOrderById(instanceId, api, role)) {
+      if (credentialRepository.claim(credential.getId()) == 1) {
+        Metrics.counter("yugabyte.credential_pool.claims", "api", api, "result", "hit")
+            .increment();
+        // Start on the replacement now rather than at the next refill.
+        if (scheduler != null) {
+          scheduler.execute(() -> instanceRepository.findById(instanceId)
+              .ifPresent(this::refillQuietly));
+        }
+        return Optional.of(new HashMap<>(credential.getCredentials()));
+      }
+    }
+    Metrics.counter("yugabyte.credential_pool.claims", "api", api, "result", "miss")
+        .increment();
+    return Optional.empty();
+  }
+
+  // Returns the role that pooled credentials need to have been created for to serve a binding
+  // with these parameters, or null if they can't serve it.
+  private static String getRole(Map<String, Object> parameters) {
+    Set<String> others = new HashSet<>(parameters.keySet());
+    others.remove("tenant");
+    others.remove("role");
+    // Pooled credentials are per API already.
+    others.remove("apis");
+    if (!others.isEmpty()) {
+      return null;
+    }
+    Object role = parameters.get("role");
+    return role == null ? DEFAULT_ROLE : role.toString();
+  }
+
+  /**
+   * Drops the pooled credentials of an instance that is being deleted. The roles of a tenant
+   * live on in its shared universe, so they are dropped from the database too.
+   */
+  public synchronized void discard(ServiceInstance si) {
+    for (PooledCredential credential :
+        credentialRepository.findByInstanceId(si.getServiceInstanceId())) {
+      if (si.isShared()) {
+        adminService.deleteCredentials(
+            YBClient.ClientType.valueOf(credential.getApi().toUpperCase()),
+            si.getUniverseUUID(), credential.getCredentials());
+      }
+      credentialRepository.delete(credential);
+    }
+  }
+
+  private void refillQuietly() {
+    try {
+      refill();
+    } catch (RuntimeException e) {
+      logger.warn("Unable to refill the credential pool: " + e.getMessage());
+    }
+  }
+
+  private void refillQuietly(ServiceInstance si) {
+    try {
+      refill(si);
+    } catch (RuntimeException e) {
+      logger.warn("Unable to refill the credential pool of " + si.getServiceInstanceId() +
+                  ": " + e.getMessage());
+    }
+  }
+
+  void refill() {
+    for (ServiceInstance si : instanceRepository.findByUniverseStateIn(
+        EnumSet.of(ServiceInstance.UniverseState.LIVE))) {
+      refillQuietly(si);
+    }
+  }
+
+  synchronized void refill(ServiceInstance si) {
+    PlanMetadata plan = catalogConfig.getPlan(si.getPlanId());
+    if (plan == null || plan.getCredentialPoolSize() == 0 ||
+        si.getUniverseState() != ServiceInstance.UniverseState.LIVE) {
+      return;
+    }
+    Map<String, Object> parameters = adminService.getBindingParameters(si, null);
+    for (YBClient.ClientType clientType : adminService.getBindingClientTypes(si, null)) {
+      String api = clientType.name().toLowerCase();
+      int pooled = credentialRepository.countByInstanceIdAndApiAndRole(
+          si.getServiceInstanceId(), api, DEFAULT_ROLE);
+      for (; pooled < plan.getCredentialPoolSize(); pooled++) {
+        Map<String, String> credentials = YugaByteAdminService.getRoleCredentials(
+            adminService.createCredentials(clientType, si.getUniverseUUID(), parameters));
+        credentialRepository.save(new PooledCredential(si.getServiceInstanceId(), api,
+                                                       DEFAULT_ROLE, credentials));
+      }
+    }
+  }
+}
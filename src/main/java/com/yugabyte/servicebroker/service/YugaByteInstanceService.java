@@ -12,13 +12,18 @@
  */
 package com.yugabyte.servicebroker.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
 import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.exception.YugaWareUnavailableException;
+import com.yugabyte.servicebroker.model.ProvisioningJob;
 import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniverseStatus;
 import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceResponse;
@@ -46,6 +51,18 @@ public class YugaByteInstanceService implements ServiceInstanceService {
   @Autowired
   YugaByteMetadataService metadataService;
 
+  @Autowired
+  YugaByteUniverseReconciler reconciler;
+
+  @Autowired
+  YugaByteProvisioningService provisioningService;
+
+  @Autowired
+  YugaByteWarmPoolService warmPoolService;
+
+  @Autowired
+  CatalogConfig catalogConfig;
+
   private final ServiceInstanceRepository instanceRepository;
 
   public YugaByteInstanceService(ServiceInstanceRepository instanceRepository) {
@@ -61,18 +78,39 @@ public class YugaByteInstanceService implements ServiceInstanceService {
       responseBuilder.instanceExisted(true);
       return responseBuilder.build();
     } else {
-      JsonNode params = metadataService.getClusterPayload(request);
-      params = adminService.configureUniverse(params);
-      params = metadataService.updateGflags(params, request);
-      JsonNode response = adminService.createUniverse(params);
-      if (response.has("error")) {
-        throw new YugaByteServiceException(response.get("error").asText());
+      // Reject bad requests right away, everything else happens in the provisioning job.
+      PlanMetadata plan = catalogConfig.getPlan(request.getPlanId());
+      if (plan == null) {
+        throw new YugaByteServiceException("Invalid CatalogConfig Id: " + request.getPlanId());
       }
-
-      ServiceInstance serviceInstance = new ServiceInstance(request, response.get("universeUUID").asText());
-      instanceRepository.save(serviceInstance);
+      if (plan.isShared()) {
+        provisioningService.submitCreate(request);
+        return CreateServiceInstanceResponse.builder()
+            .operation("Database is being created on a shared universe")
+            .async(true)
+            .build();
+      }
+      String universeName = metadataService.getUniverseName(request);
+      Optional<String> warmUniverseUUID = warmPoolService.claim(request);
+      if (warmUniverseUUID.isPresent()) {
+        ServiceInstance si = new ServiceInstance(request, warmUniverseUUID.get());
+        si.updateState(ServiceInstance.UniverseState.LIVE);
+        instanceRepository.save(si);
+        return CreateServiceInstanceResponse.builder()
+            .operation("Using universe: " + warmUniverseUUID.get())
+            .async(false)
+            .build();
+      }
+      // The payload is built again when the job runs, this only checks the parameters against
+      // the plan and YugaWare's metadata so that a bad one fails the request instead of the job.
+      try {
+        metadataService.getClusterPayload(request);
+      } catch (IllegalArgumentException | ClassCastException e) {
+        throw new ServiceBrokerInvalidParametersException(e.getMessage());
+      }
+      provisioningService.submitCreate(request);
       return CreateServiceInstanceResponse.builder()
-          .operation("Universe is being created: " + response.get("universeUUID").asText())
+          .operation("Universe is being created: " + universeName)
           .async(true)
           .build();
     }
@@ -101,23 +139,11 @@ public class YugaByteInstanceService implements ServiceInstanceService {
 
     if (serviceInstance.isPresent()) {
       ServiceInstance si = serviceInstance.get();
-      String universeUUID = si.getUniverseUUID();
-      JsonNode response = adminService.deleteUniverse(universeUUID);
-      if (response.has("error")) {
-        si.updateState(ServiceInstance.UniverseState.ERROR);
-        instanceRepository.save(si);
-        return DeleteServiceInstanceResponse.builder()
-            .operation("Delete Universe: " + si.getServiceInstanceId() + " Failed!")
-            .async(true)
-            .build();
-      } else {
-        si.updateState(ServiceInstance.UniverseState.DELETING);
-        instanceRepository.save(si);
-        return DeleteServiceInstanceResponse.builder()
-            .operation("Deleting Universe: " + si.getServiceInstanceId())
-            .async(true)
-            .build();
-      }
+      provisioningService.submitDelete(si);
+      return DeleteServiceInstanceResponse.builder()
+          .operation("Deleting Universe: " + si.getServiceInstanceId())
+          .async(true)
+          .build();
     } else {
       throw new ServiceInstanceDoesNotExistException(instanceId);
     }
@@ -131,9 +157,14 @@ public class YugaByteInstanceService implements ServiceInstanceService {
     if (serviceInstance.isPresent()) {
       ServiceInstance si = serviceInstance.get();
       String universeUUID = si.getUniverseUUID();
-      JsonNode response = adminService.getUniverse(universeUUID);
-      si.updateState(response.get("universeDetails"));
-      instanceRepository.save(si);
+      try {
+        if (universeUUID != null && !si.isShared()) {
+          updateState(si, adminService.getUniverseStatus(universeUUID));
+        }
+      } catch (YugaWareUnavailableException ue) {
+        // Better a slightly stale state than no answer while YugaWare is down.
+        logger.warn("Returning the stored state of " + instanceId + ": " + ue.getMessage());
+      }
       return GetServiceInstanceResponse.builder()
           .serviceDefinitionId(serviceInstance.get().getServiceDefinitionId())
           .planId(serviceInstance.get().getPlanId())
@@ -152,32 +183,76 @@ public class YugaByteInstanceService implements ServiceInstanceService {
 
     if (serviceInstance.isPresent()) {
       ServiceInstance si = serviceInstance.get();
-      String universeUUID = si.getUniverseUUID();
-      OperationState state = OperationState.IN_PROGRESS;
-      try {
-        JsonNode response = adminService.getUniverse(universeUUID);
-        si.updateState(response.get("universeDetails"));
-        instanceRepository.save(si);
-        if (si.getUniverseState().equals(ServiceInstance.UniverseState.LIVE)) {
-          state = OperationState.SUCCEEDED;
-        } else if (si.getUniverseState().equals(ServiceInstance.UniverseState.ERROR)) {
-          state = OperationState.FAILED;
-        }
-      } catch (YugaByteServiceException ye) {
-        // If the error is invalid universe, likely the universe is deleted
-        if (ye.getMessage().contains("Unable to fetch universe") &&
-            si.getUniverseState().equals(ServiceInstance.UniverseState.DELETING)) {
-          state = OperationState.SUCCEEDED;
-        } else {
-          logger.warn("Unhandled YugaByte Service exception : " + ye.getMessage());
-        }
+      Optional<ProvisioningJob> job = provisioningService.getJob(instanceId);
+      if (job.isPresent() && job.get().getState() != ProvisioningJob.State.SUCCEEDED) {
+        return GetLastServiceOperationResponse.builder()
+            .operationState(job.get().getState() == ProvisioningJob.State.FAILED
+                ? OperationState.FAILED
+                : OperationState.IN_PROGRESS)
+            .description(job.get().getDescription())
+            .build();
       }
+      // The reconciler keeps the stored state current, as do the jobs of shared plan tenants,
+      // so there is no need to go to YugaWare.
+      OperationState state =
+          reconciler.isEnabled() || si.getUniverseUUID() == null || si.isShared()
+          ? getOperationState(si.getUniverseState())
+          : fetchOperationState(si);
 
       return GetLastServiceOperationResponse.builder()
           .operationState(state)
+          .description(job.map(ProvisioningJob::getDescription).orElse(null))
           .build();
     } else {
       throw new ServiceInstanceDoesNotExistException(instanceId);
     }
   }
+
+  private OperationState fetchOperationState(ServiceInstance si) {
+    if (si.getUniverseState() == ServiceInstance.UniverseState.DELETED) {
+      return OperationState.SUCCEEDED;
+    }
+    String universeUUID = si.getUniverseUUID();
+    OperationState state = OperationState.IN_PROGRESS;
+    try {
+      updateState(si, adminService.getUniverseStatus(universeUUID));
+      state = getOperationState(si.getUniverseState());
+    } catch (YugaByteServiceException ye) {
+      // If the error is invalid universe, likely the universe is deleted
+      if (ye.getMessage().contains("Unable to fetch universe") &&
+          si.getUniverseState().equals(ServiceInstance.UniverseState.DELETING)) {
+        state = OperationState.SUCCEEDED;
+      } else {
+        logger.warn("Unhandled YugaByte Service exception : " + ye.getMessage());
+      }
+    }
+    return state;
+  }
+
+  private static OperationState getOperationState(ServiceInstance.UniverseState universeState) {
+    switch (universeState) {
+      case LIVE:
+      case DELETED:
+        return OperationState.SUCCEEDED;
+      case ERROR:
+        return OperationState.FAILED;
+      default:
+        return OperationState.IN_PROGRESS;
+    }
+  }
+
+  private void updateState(ServiceInstance si, UniverseStatus universeStatus) {
+    ServiceInstance.UniverseState previousState = si.getUniverseState();
+    si.updateState(universeStatus);
+    saveState(si, previousState);
+  }
+
+  private void saveState(ServiceInstance si, ServiceInstance.UniverseState previousState) {
+    // The universe nodes may have changed along with its state, so don't hand out
+    // cached endpoints for it anymore.
+    if (si.getUniverseState() != previousState) {
+      adminService.invalidateUniverseEndpoints(si.getUniverseUUID());
+    }
+    instanceRepository.save(si);
+  }
 }
\ No newline at end of file
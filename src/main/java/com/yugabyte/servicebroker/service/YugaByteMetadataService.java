@@ -23,6 +23,7 @@ import com.yugabyte.servicebroker.utils.CommonUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cloud.servicebroker.model.instance.AsyncParameterizedServiceInstanceRequest;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
 import org.springframework.stereotype.Service;
@@ -35,6 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -44,6 +47,7 @@ public class YugaByteMetadataService {
 
   private YugaByteAdminService adminService;
   private CatalogConfig catalogConfig;
+  private ExecutorService yugaWareExecutor;
 
   private static int DEFAULT_NUM_NODES = 3;
   private static int DEFAULT_REPLICATION_FACTOR = 3;
@@ -53,10 +57,13 @@ public class YugaByteMetadataService {
   private static String DEFAULT_KUBERNETES_PROVIDER = "pks";
 
   @Autowired
-  public YugaByteMetadataService(YugaByteAdminService adminService,
-                                 CatalogConfig catalogConfig) {
+  public YugaByteMetadataService(
+      YugaByteAdminService adminService,
+      CatalogConfig catalogConfig,
+      @Qualifier("yugaWareExecutor") ExecutorService yugaWareExecutor) {
     this.adminService = adminService;
     this.catalogConfig = catalogConfig;
+    this.yugaWareExecutor = yugaWareExecutor;
   }
 
   // YugaByte Admin org.yb.servicebroker.common metadata APIs
@@ -101,9 +108,19 @@ public class YugaByteMetadataService {
         .collect(Collectors.toList());
   }
 
+  public String getUniverseName(CreateServiceInstanceRequest request) {
+    Map<String, Object> parameters = request.getParameters();
+    Object universeName = parameters == null ? null : parameters.get("universe_name");
+    String name = universeName != null ? universeName.toString() :
+        "service-instance-" + request.getServiceInstanceId().substring(0, 8);
+    if (!name.matches("^[a-zA-Z0-9-]*$")) {
+      throw new YugaByteServiceException("Invalid Universe Name : " + name);
+    }
+    return name;
+  }
+
   // YugaByte Admin Universe metadata APIs
   public JsonNode getClusterPayload(CreateServiceInstanceRequest request) {
-    String instanceId = request.getServiceInstanceId();
     PlanMetadata requestedPlan = catalogConfig.getPlan(request.getPlanId());
 
     if (requestedPlan == null) {
@@ -113,24 +130,8 @@ public class YugaByteMetadataService {
     if (parameters == null) {
       parameters = new HashMap<>();
     }
-    List<String> ybReleases = adminService.getReleases();
-    // Only use the software version if the one that is passed is valid.
-    if (parameters.containsKey("yb_version") &&
-        !ybReleases.contains(parameters.get("yb_version").toString())) {
-      throw new YugaByteServiceException("Invalid YB Software version.");
-    }
-
     // Override the defaults based on parameters passed.
-    String universeName =
-        parameters.getOrDefault("universe_name",
-            "service-instance-" + instanceId.substring(0, 8)).toString();
-
-    if (!universeName.matches("^[a-zA-Z0-9-]*$")) {
-      throw new YugaByteServiceException("Invalid Universe Name : " + universeName);
-    }
-
-    String ybSoftwareVersion =
-        parameters.getOrDefault("yb_version", ybReleases.get(0)).toString();
+    String universeName = getUniverseName(request);
 
     int numVolumes =
         Integer.parseInt(parameters.getOrDefault("num_volumes", DEFAULT_NUM_VOLUMES).toString());
@@ -150,20 +151,48 @@ public class YugaByteMetadataService {
         Boolean.parseBoolean(parameters.getOrDefault("enable_ysql", "false").toString());
     List<String> regionCodes = (ArrayList<String>) parameters.getOrDefault("region_codes", new ArrayList());
 
-    JsonNode provider = fetchProvider(providerType, kubeProvider);
-    if (provider == null) {
-      throw new YugaByteServiceException("Unable to fetch Provider Metadata");
-    }
-    UUID providerUUID = UUID.fromString(provider.get("uuid").asText());
-    List<String> regionUUIDs = fetchRegionUUIDs(providerUUID, regionCodes);
-    if (regionUUIDs.isEmpty()) {
-      throw new YugaByteServiceException("Unable to fetch Region Metadata");
-    }
+    // Releases and the provider are independent of each other, the regions and access keys
+    // only need the provider. Run the lookups as that graph instead of one after the other.
+    CompletableFuture<List<String>> releasesFuture =
+        CompletableFuture.supplyAsync(adminService::getReleases, yugaWareExecutor);
+    CompletableFuture<JsonNode> providerFuture = CompletableFuture.supplyAsync(() -> {
+      JsonNode provider = fetchProvider(providerType, kubeProvider);
+      if (provider == null) {
+        throw new YugaByteServiceException("Unable to fetch Provider Metadata");
+      }
+      return provider;
+    }, yugaWareExecutor);
+    CompletableFuture<List<String>> regionsFuture = providerFuture.thenApplyAsync(provider -> {
+      UUID providerUUID = UUID.fromString(provider.get("uuid").asText());
+      List<String> regionUUIDs = fetchRegionUUIDs(providerUUID, regionCodes);
+      if (regionUUIDs.isEmpty()) {
+        throw new YugaByteServiceException("Unable to fetch Region Metadata");
+      }
+      return regionUUIDs;
+    }, yugaWareExecutor);
     // Fetch the accessKey for the provider.
-    List<String> accessKeys = fetchAccessKeys(providerUUID);
-    if (accessKeys.isEmpty() && !providerType.equals("kubernetes")) {
-      throw new YugaByteServiceException("Unable to fetch AccessKey Information");
+    CompletableFuture<List<String>> accessKeysFuture = providerFuture.thenApplyAsync(provider -> {
+      UUID providerUUID = UUID.fromString(provider.get("uuid").asText());
+      List<String> accessKeys = fetchAccessKeys(providerUUID);
+      if (accessKeys.isEmpty() && !providerType.equals("kubernetes")) {
+        throw new YugaByteServiceException("Unable to fetch AccessKey Information");
+      }
+      return accessKeys;
+    }, yugaWareExecutor);
+    CommonUtils.awaitAll(releasesFuture, providerFuture, regionsFuture, accessKeysFuture);
+
+    List<String> ybReleases = releasesFuture.join();
+    // Only use the software version if the one that is passed is valid.
+    if (parameters.containsKey("yb_version") &&
+        !ybReleases.contains(parameters.get("yb_version").toString())) {
+      throw new YugaByteServiceException("Invalid YB Software version.");
     }
+    String ybSoftwareVersion =
+        parameters.getOrDefault("yb_version", ybReleases.get(0)).toString();
+
+    JsonNode provider = providerFuture.join();
+    List<String> regionUUIDs = regionsFuture.join();
+    List<String> accessKeys = accessKeysFuture.join();
 
     ObjectMapper mapper = new ObjectMapper();
     ArrayNode clusters = mapper.createArrayNode();
@@ -0,0 +1,330 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.exception.YugaWareUnavailableException;
+import com.yugabyte.servicebroker.model.ProvisioningJob;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.repository.ProvisioningJobRepository;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import com.yugabyte.servicebroker.repository.SharedUniverseRepository;
+import com.yugabyte.servicebroker.repository.WarmUniverseRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOperationInProgressException;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the YugaWare side of creating and deleting service instances on a worker pool, so the
+ * OSB requests only have to persist a {@link ProvisioningJob} and return.
+ *
+ * Jobs left pending or running by a previous broker process are picked up again on startup.
+ * Creating a universe is the one step that must not be repeated, so a job records that it is
+ * about to send the create first. A resumed job with that record looks the universe up by name
+ * and adopts it, unless it already belongs to another instance or to one of the pools.
+ *
+ * Instances of shared plans get a database and keyspace on a shared universe instead. Their
+ * state follows the job rather than the state of the universe they share.
+ */
+@Service
+public class YugaByteProvisioningService {
+  private static final Log logger = LogFactory.getLog(YugaByteProvisioningService.class);
+
+  private YugaByteServiceConfig adminConfig;
+  private CatalogConfig catalogConfig;
+  private YugaByteAdminService adminService;
+  private YugaByteMetadataService metadataService;
+  private YugaByteUniverseReconciler reconciler;
+  private YugaByteSharedUniverseService sharedUniverseService;
+  private YugaByteCredentialPoolService credentialPoolService;
+  private YugaByteBindingService bindingService;
+  private ServiceInstanceRepository instanceRepository;
+  private ProvisioningJobRepository jobRepository;
+  private WarmUniverseRepository warmUniverseRepository;
+  private SharedUniverseRepository sharedUniverseRepository;
+
+  private ScheduledExecutorService workers;
+
+  @Autowired
+  public YugaByteProvisioningService(YugaByteServiceConfig adminConfig,
+                                     CatalogConfig catalogConfig,
+                                     YugaByteAdminService adminService,
+                                     YugaByteMetadataService metadataService,
+                                     YugaByteUniverseReconciler reconciler,
+                                     YugaByteSharedUniverseService sharedUniverseService,
+                                     YugaByteCredentialPoolService credentialPoolService,
+                                     YugaByteBindingService bindingService,
+                                     ServiceInstanceRepository instanceRepository,
+                                     ProvisioningJobRepository jobRepository,
+                                     WarmUniverseRepository warmUniverseRepository,
+                                     SharedUniverseRepository sharedUniverseRepository) {
+    this.adminConfig = adminConfig;
+    this.catalogConfig = catalogConfig;
+    this.adminService = adminService;
+    this.metadataService = metadataService;
+    this.reconciler = reconciler;
+    this.sharedUniverseService = sharedUniverseService;
+    this.credentialPoolService = credentialPoolService;
+    this.bindingService = bindingService;
+    this.instanceRepository = instanceRepository;
+    this.jobRepository = jobRepository;
+    this.warmUniverseRepository = warmUniverseRepository;
+    this.sharedUniverseRepository = sharedUniverseRepository;
+  }
+
+  @PostConstruct
+  public void start() {
+    workers = new ScheduledThreadPoolExecutor(adminConfig.provisioningThreads,
+        new ThreadFactoryBuilder().setNameFormat("provisioning-%d").setDaemon(true).build());
+    List<ProvisioningJob> unfinished = jobRepository.findByStateIn(
+        EnumSet.of(ProvisioningJob.State.PENDING, ProvisioningJob.State.RUNNING));
+    for (ProvisioningJob job : unfinished) {
+      logger.info("Resuming " + job.getOperation() + " of service instance " +
+                  job.getInstanceId());
+      schedule(job.getInstanceId(), 0);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    // Jobs cut short here are still marked running, and are resumed on the next start.
+    workers.shutdownNow();
+  }
+
+  public Optional<ProvisioningJob> getJob(String instanceId) {
+    return jobRepository.findById(instanceId);
+  }
+
+  public void submitCreate(CreateServiceInstanceRequest request) {
+    // The job goes first, a job without its instance recreates the instance when it runs.
+    ProvisioningJob job = ProvisioningJob.create(request);
+    jobRepository.save(job);
+    instanceRepository.save(new ServiceInstance(request, null));
+    schedule(job.getInstanceId(), 0);
+  }
+
+  public void submitDelete(ServiceInstance si) {
+    Optional<ProvisioningJob> current = getJob(si.getServiceInstanceId());
+    if (current.isPresent() && !current.get().isFinished()) {
+      throw new ServiceBrokerOperationInProgressException(
+          current.get().getOperation() + " of the service instance is still in progress");
+    }
+    ProvisioningJob job = ProvisioningJob.delete(si);
+    jobRepository.save(job);
+    setState(si, ServiceInstance.UniverseState.DELETING);
+    schedule(job.getInstanceId(), 0);
+  }
+
+  private void schedule(String instanceId, long delaySecs) {
+    workers.schedule(() -> run(instanceId), delaySecs, TimeUnit.SECONDS);
+  }
+
+  void run(String instanceId) {
+    Optional<ProvisioningJob> found = getJob(instanceId);
+    if (!found.isPresent() || found.get().isFinished()) {
+      return;
+    }
+    ProvisioningJob job = found.get();
+    job.start();
+    jobRepository.save(job);
+    try {
+      if (job.getOperation() == ProvisioningJob.Operation.CREATE) {
+        PlanMetadata plan = catalogConfig.getPlan(job.getPlanId());
+        if (plan != null && plan.isShared()) {
+          if (!runCreateTenant(job, plan)) {
+            job.postpone(job.getDescription());
+            jobRepository.save(job);
+            schedule(instanceId, adminConfig.provisioningRetryDelaySecs);
+            return;
+          }
+        } else {
+          runCreate(job);
+        }
+      } else {
+        Optional<ServiceInstance> si = instanceRepository.findById(instanceId);
+        if (si.isPresent() && si.get().isShared()) {
+          runDeleteTenant(job, si.get());
+        } else {
+          runDelete(job);
+        }
+      }
+      job.update(ProvisioningJob.State.SUCCEEDED, job.getDescription());
+      jobRepository.save(job);
+      reconciler.wakeUp();
+    } catch (YugaWareUnavailableException | RestClientException e) {
+      if (job.getAttempts() < adminConfig.provisioningMaxAttempts) {
+        logger.warn(job.getOperation() + " of " + instanceId + " will be retried: " +
+                    e.getMessage());
+        job.update(ProvisioningJob.State.PENDING, "Waiting for YugaWare: " + e.getMessage());
+        jobRepository.save(job);
+        schedule(instanceId, adminConfig.provisioningRetryDelaySecs);
+      } else {
+        fail(job, e);
+      }
+    } catch (RuntimeException e) {
+      fail(job, e);
+    }
+  }
+
+  private void runCreate(ProvisioningJob job) {
+    CreateServiceInstanceRequest request = job.toCreateRequest();
+    if (job.getUniverseUUID() == null) {
+      String universeName = metadataService.getUniverseName(request);
+      // Only a job that may have sent the create already looks for its universe, before that
+      // a universe of the same name is someone else's.
+      String universeUUID = job.isSubmitted() ? adminService.findUniverseUUID(universeName) : null;
+      if (universeUUID != null) {
+        checkUnowned(universeUUID, job.getInstanceId());
+        logger.info("Universe " + universeName + " already exists, using it for " +
+                    job.getInstanceId());
+      } else {
+        setStep(job, "Fetching universe metadata");
+        JsonNode params = metadataService.getClusterPayload(request);
+        setStep(job, "Configuring universe " + universeName);
+        params = adminService.configureUniverse(params);
+        params = metadataService.updateGflags(params, request);
+        job.markSubmitted();
+        setStep(job, "Creating universe " + universeName);
+        JsonNode response = adminService.createUniverse(params);
+        if (response.has("error")) {
+          throw new YugaByteServiceException(response.get("error").asText());
+        }
+        universeUUID = response.get("universeUUID").asText();
+      }
+      job.setUniverseUUID(universeUUID);
+      job.setDescription("Universe is being created: " + universeUUID);
+      jobRepository.save(job);
+    }
+    ServiceInstance si = instanceRepository.findById(job.getInstanceId())
+        .orElseGet(() -> new ServiceInstance(request, null));
+    si.setUniverseUUID(job.getUniverseUUID());
+    instanceRepository.save(si);
+  }
+
+  private void checkUnowned(String universeUUID, String instanceId) {
+    boolean owned = warmUniverseRepository.existsByUniverseUUID(universeUUID) ||
+        sharedUniverseRepository.existsById(universeUUID) ||
+        instanceRepository.findByUniverseUUID(universeUUID).stream()
+            .anyMatch(si -> !si.getServiceInstanceId().equals(instanceId));
+    if (owned) {
+      throw new YugaByteServiceException("Universe " + universeUUID +
+                                         " already belongs to another service instance");
+    }
+  }
+
+  // Returns false if the job has to wait for a shared universe to be created first.
+  private boolean runCreateTenant(ProvisioningJob job, PlanMetadata plan) {
+    if (job.getUniverseUUID() == null) {
+      Optional<String> universeUUID = sharedUniverseService.reserve(plan);
+      if (!universeUUID.isPresent()) {
+        job.setDescription("Waiting for a new shared universe of plan " + plan.getCode());
+        return false;
+      }
+      // Record the slot right away, so a resumed job doesn't take another one.
+      job.setUniverseUUID(universeUUID.get());
+      setStep(job, "Creating database on shared universe " + universeUUID.get());
+    }
+    String tenant = YugaByteSharedUniverseService.getTenantName(job.getInstanceId());
+    // The instance is tied to its slot before the database is created, so that deleting the
+    // instance frees the slot even if creating the database fails.
+    ServiceInstance si = instanceRepository.findById(job.getInstanceId())
+        .orElseGet(() -> new ServiceInstance(job.toCreateRequest(), null));
+    si.setUniverseUUID(job.getUniverseUUID());
+    si.setTenant(tenant);
+    instanceRepository.save(si);
+    adminService.createTenant(job.getUniverseUUID(), tenant);
+    setState(si, ServiceInstance.UniverseState.LIVE);
+    job.setDescription("Using shared universe: " + job.getUniverseUUID());
+    return true;
+  }
+
+  private void runDeleteTenant(ProvisioningJob job, ServiceInstance si) {
+    setStep(job, "Deleting database " + si.getTenant());
+    credentialPoolService.discard(si);
+    bindingService.deleteServiceInstanceBindings(si);
+    adminService.deleteTenant(si.getUniverseUUID(), si.getTenant());
+    // A resumed job may have given the slot back already.
+    if (si.getUniverseState() != ServiceInstance.UniverseState.DELETED) {
+      setState(si, ServiceInstance.UniverseState.DELETED);
+      sharedUniverseService.release(si.getUniverseUUID());
+    }
+    job.setDescription("Deleted database " + si.getTenant());
+  }
+
+  private void runDelete(ProvisioningJob job) {
+    String universeUUID = job.getUniverseUUID();
+    Optional<ServiceInstance> si = instanceRepository.findById(job.getInstanceId());
+    si.ifPresent(credentialPoolService::discard);
+    if (universeUUID != null) {
+      UniverseStatus status = adminService.getUniverseStatuses().get(universeUUID);
+      // A resumed job may find the universe already being deleted by its earlier attempt. A
+      // task in progress before this job sent its delete is something else, and is no reason
+      // to skip the delete.
+      boolean alreadyDeleting = job.isSubmitted() && status != null &&
+          status.isUpdateInProgress();
+      if (status != null && !alreadyDeleting) {
+        job.markSubmitted();
+        setStep(job, "Deleting universe " + universeUUID);
+        JsonNode response = adminService.deleteUniverse(universeUUID);
+        if (response.has("error")) {
+          throw new YugaByteServiceException(response.get("error").asText());
+        }
+      }
+    }
+    si.ifPresent(bindingService::deleteServiceInstanceBindings);
+    job.setDescription("Deleting universe: " + universeUUID);
+  }
+
+  private void setStep(ProvisioningJob job, String description) {
+    job.setDescription(description);
+    jobRepository.save(job);
+  }
+
+  private void fail(ProvisioningJob job, RuntimeException e) {
+    logger.error(job.getOperation() + " of service instance " + job.getInstanceId() +
+                 " failed", e);
+    job.update(ProvisioningJob.State.FAILED, job.getOperation() + " failed: " + e.getMessage());
+    jobRepository.save(job);
+    instanceRepository.findById(job.getInstanceId())
+        .ifPresent(si -> setState(si, ServiceInstance.UniverseState.ERROR));
+  }
+
+  private void setState(ServiceInstance si, ServiceInstance.UniverseState universeState) {
+    // Tenants changing state leave the universe they share as it is.
+    if (si.getUniverseState() != universeState && si.getUniverseUUID() != null &&
+        !si.isShared()) {
+      adminService.invalidateUniverseEndpoints(si.getUniverseUUID());
+    }
+    si.updateState(universeState);
+    instanceRepository.save(si);
+  }
+}
@@ -0,0 +1,173 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.model.SharedUniverse;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.repository.SharedUniverseRepository;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Places the service instances of shared plans on a fleet of broker-managed universes.
+ *
+ * Tenants go to the fullest universe that still has room, so that the fleet stays as small as
+ * it can be and freed slots are reused before new universes fill up. A new universe is opened
+ * as soon as the last free slot of the plan is taken, so that the next tenant doesn't have to
+ * wait for a universe to be created. Emptied universes are kept for the tenants to come.
+ */
+@Service
+public class YugaByteSharedUniverseService {
+  private static final Log logger = LogFactory.getLog(YugaByteSharedUniverseService.class);
+
+  // YSQL and YCQL both cut identifiers at 63 characters.
+  private static final int MAX_TENANT_NAME_LENGTH = 63;
+
+  private YugaByteAdminService adminService;
+  private YugaByteMetadataService metadataService;
+  private SharedUniverseRepository sharedUniverseRepository;
+
+  @Autowired
+  public YugaByteSharedUniverseService(YugaByteAdminService adminService,
+                                       YugaByteMetadataService metadataService,
+                                       SharedUniverseRepository sharedUniverseRepository) {
+    this.adminService = adminService;
+    this.metadataService = metadataService;
+    this.sharedUniverseRepository = sharedUniverseRepository;
+  }
+
+  /**
+   * Returns the database and keyspace name of a service instance, which only has characters
+   * that both YSQL and YCQL accept unquoted.
+   */
+  public static String getTenantName(String instanceId) {
+    String name = "si_" + instanceId.toLowerCase().replaceAll("[^a-z0-9_]", "_");
+    return name.length() > MAX_TENANT_NAME_LENGTH
+        ? name.substring(0, MAX_TENANT_NAME_LENGTH)
+        : name;
+  }
+
+  /**
+   * Takes a tenant slot on one of the shared universes of the plan, and returns the universe.
+   * Returns nothing while all of them are full and a new one is being created.
+   */
+  public synchronized Optional<String> reserve(PlanMetadata plan) {
+    List<SharedUniverse> universes = sharedUniverseRepository.findByPlanId(plan.getCode());
+    boolean creating = checkCreatingUniverses(universes);
+    List<SharedUniverse> ready = universes.stream()
+        .filter(u -> u.getState() == SharedUniverse.State.READY)
+        .sorted(Comparator.comparingInt(SharedUniverse::getTenantCount).reversed())
+        .collect(Collectors.toList());
+    int freeSlots = ready.stream()
+        .mapToInt(u -> Math.max(0, plan.getMaxTenants() - u.getTenantCount()))
+        .sum();
+
+    String universeUUID = null;
+    for (SharedUniverse universe : ready) {
+      if (universe.getTenantCount() < plan.getMaxTenants() &&
+          sharedUniverseRepository.reserve(universe.getUniverseUUID(),
+                                           plan.getMaxTenants()) == 1) {
+        universeUUID = universe.getUniverseUUID();
+        freeSlots--;
+        break;
+      }
+    }
+    if (freeSlots <= 0 && !creating) {
+      createSharedUniverse(plan);
+    }
+    Metrics.counter("yugabyte.shared_universe.reservations", "plan", plan.getCode(),
+        "result", universeUUID != null ? "placed" : "waiting").increment();
+    return Optional.ofNullable(universeUUID);
+  }
+
+  /**
+   * Gives back the tenant slot of a deleted service instance.
+   */
+  public void release(String universeUUID) {
+    sharedUniverseRepository.release(universeUUID);
+  }
+
+  // Marks the universes that finished creating as ready, drops the ones that failed, and
+  // returns whether any are still being created.
+  private boolean checkCreatingUniverses(List<SharedUniverse> universes) {
+    boolean creating = false;
+    Map<String, UniverseStatus> statuses = null;
+    for (SharedUniverse universe : universes) {
+      if (universe.getState() != SharedUniverse.State.CREATING) {
+        continue;
+      }
+      if (statuses == null) {
+        statuses = adminService.getUniverseStatuses();
+      }
+      String universeUUID = universe.getUniverseUUID();
+      UniverseStatus status = statuses.get(universeUUID);
+      if (status == null) {
+        logger.warn("Shared universe " + universeUUID + " no longer exists, dropping it");
+        sharedUniverseRepository.deleteById(universeUUID);
+      } else if (status.isUpdateInProgress()) {
+        creating = true;
+      } else if (!status.isUpdateSucceeded()) {
+        logger.warn("Shared universe " + universeUUID + " failed to create, deleting it");
+        sharedUniverseRepository.deleteById(universeUUID);
+        adminService.deleteUniverse(universeUUID);
+      } else {
+        universe.setReady();
+        sharedUniverseRepository.save(universe);
+        logger.info("Shared universe " + universeUUID + " is ready");
+      }
+    }
+    return creating;
+  }
+
+  // Tenants get a database as well as a keyspace, so shared universes always run YSQL.
+  static CreateServiceInstanceRequest createSharedUniverseRequest(PlanMetadata plan,
+                                                                  String universeName) {
+    return CreateServiceInstanceRequest.builder()
+        .serviceInstanceId(universeName)
+        .planId(plan.getCode())
+        .parameters("universe_name", universeName)
+        .parameters("enable_ysql", "true")
+        .build();
+  }
+
+  private void createSharedUniverse(PlanMetadata plan) {
+    String universeName = "shared-" + plan.getCode() + "-" +
+        UUID.randomUUID().toString().substring(0, 8);
+    CreateServiceInstanceRequest request = createSharedUniverseRequest(plan, universeName);
+    JsonNode params = metadataService.getClusterPayload(request);
+    params = adminService.configureUniverse(params);
+    params = metadataService.updateGflags(params, request);
+    JsonNode response = adminService.createUniverse(params);
+    if (response.has("error")) {
+      throw new YugaByteServiceException(response.get("error").asText());
+    }
+    String universeUUID = response.get("universeUUID").asText();
+    sharedUniverseRepository.save(new SharedUniverse(universeUUID, plan.getCode()));
+    logger.info("Creating shared universe " + universeName + " (" + universeUUID +
+                ") for plan " + plan.getCode());
+  }
+}
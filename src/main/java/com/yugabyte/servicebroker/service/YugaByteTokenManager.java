@@ -0,0 +1,198 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the YugaWare auth token and customer UUID for the admin client. The cached token is
+ * assumed to be valid until YugaWare rejects a request with it, at which point the caller
+ * asks for a refresh and replays its request.
+ *
+ * The token and customer UUID are swapped together as one immutable {@link Credentials}
+ * snapshot, and only one login is in flight at any time: concurrent callers that need a new
+ * token wait on the same login instead of each posting to /login.
+ */
+public class YugaByteTokenManager {
+  private static final Log logger = LogFactory.getLog(YugaByteTokenManager.class);
+
+  public static class Credentials {
+    private final String authToken;
+    private final String customerUUID;
+    private final long issuedAtMillis;
+
+    Credentials(String authToken, String customerUUID) {
+      this.authToken = authToken;
+      this.customerUUID = customerUUID;
+      this.issuedAtMillis = System.currentTimeMillis();
+    }
+
+    public String getAuthToken() {
+      return authToken;
+    }
+
+    public String getCustomerUUID() {
+      return customerUUID;
+    }
+
+    boolean isOlderThan(long ageMillis) {
+      return System.currentTimeMillis() - issuedAtMillis > ageMillis;
+    }
+  }
+
+  private YugaByteServiceConfig adminConfig;
+  private RestTemplate restTemplate;
+
+  private final AtomicReference<Credentials> credentials = new AtomicReference<>();
+  private final AtomicReference<CompletableFuture<Credentials>> inflightLogin =
+      new AtomicReference<>();
+
+  private final Counter loginSuccessCounter;
+  private final Counter loginFailureCounter;
+  private final Timer loginTimer;
+
+  public YugaByteTokenManager(YugaByteServiceConfig adminConfig, RestTemplate restTemplate) {
+    this.adminConfig = adminConfig;
+    this.restTemplate = restTemplate;
+    this.loginSuccessCounter = Metrics.counter("yugabyte.admin.logins", "result", "success");
+    this.loginFailureCounter = Metrics.counter("yugabyte.admin.logins", "result", "failure");
+    this.loginTimer = Metrics.timer("yugabyte.admin.login.latency");
+  }
+
+  /**
+   * Returns the current credentials, logging in if we don't have any yet. If proactive refresh
+   * is enabled and the token is older than the configured age, the first caller to notice
+   * refreshes it while everyone else keeps using the current token.
+   */
+  public Credentials getCredentials() {
+    Credentials current = credentials.get();
+    if (current == null) {
+      return refresh(null);
+    }
+    long refreshMillis = TimeUnit.SECONDS.toMillis(adminConfig.tokenRefreshSecs);
+    if (refreshMillis > 0 && current.isOlderThan(refreshMillis) && inflightLogin.get() == null) {
+      try {
+        return refresh(current);
+      } catch (YugaByteServiceException | RestClientException e) {
+        logger.warn("Proactive token refresh failed, using the current token: " + e.getMessage());
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Replaces the given stale credentials with fresh ones. If some other caller has already
+   * replaced them, or is in the middle of doing so, its result is returned instead.
+   */
+  public Credentials refresh(Credentials stale) {
+    while (true) {
+      CompletableFuture<Credentials> pending = inflightLogin.get();
+      if (pending != null) {
+        return awaitLogin(pending);
+      }
+      Credentials current = credentials.get();
+      if (current != stale) {
+        return current;
+      }
+      CompletableFuture<Credentials> login = new CompletableFuture<>();
+      if (inflightLogin.compareAndSet(null, login)) {
+        try {
+          Credentials fresh = login();
+          credentials.set(fresh);
+          login.complete(fresh);
+          return fresh;
+        } catch (RuntimeException e) {
+          login.completeExceptionally(e);
+          throw e;
+        } finally {
+          inflightLogin.compareAndSet(login, null);
+        }
+      }
+    }
+  }
+
+  public void reset() {
+    credentials.set(null);
+  }
+
+  private Credentials awaitLogin(CompletableFuture<Credentials> pending) {
+    try {
+      return pending.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private Credentials login() {
+    long startNanos = System.nanoTime();
+    try {
+      Credentials fresh = doLogin();
+      loginSuccessCounter.increment();
+      return fresh;
+    } catch (RuntimeException e) {
+      loginFailureCounter.increment();
+      throw e;
+    } finally {
+      loginTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Credentials doLogin() {
+    ObjectMapper mapper = new ObjectMapper();
+    ObjectNode authParams = mapper.createObjectNode();
+    authParams.put("email", adminConfig.user);
+    authParams.put("password", adminConfig.password);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    String loginUrl = String.format("http://%s:%s/api/login", adminConfig.hostname, adminConfig.port);
+    ResponseEntity<JsonNode> authResponse = restTemplate.exchange(loginUrl, HttpMethod.POST,
+        new HttpEntity<>(authParams, headers), JsonNode.class);
+
+    JsonNode responseBody = authResponse.getBody();
+    if (authResponse.getStatusCode() != HttpStatus.OK || responseBody == null ||
+        !responseBody.has("authToken") || !responseBody.has("customerUUID")) {
+      logger.warn("YugaWare login returned status: " + authResponse.getStatusCode().value());
+      throw new YugaByteServiceException("Unable to authenticate with YugaWare");
+    }
+    return new Credentials(responseBody.get("authToken").asText(),
+                           responseBody.get("customerUUID").asText());
+  }
+}
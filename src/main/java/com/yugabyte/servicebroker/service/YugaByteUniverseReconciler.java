@@ -0,0 +1,189 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the stored universe state of service instances with an operation in flight up to date,
+ * so that getLastOperation can answer from the repository. Each pass fetches every universe of
+ * the customer with one list call and saves the instances that changed state with one update
+ * per kind of change. An instance whose state was changed by someone else during the pass,
+ * such as a delete that started, is left as it is.
+ */
+@Service
+public class YugaByteUniverseReconciler {
+  private static final Log logger = LogFactory.getLog(YugaByteUniverseReconciler.class);
+
+  static final Set<ServiceInstance.UniverseState> IN_FLIGHT_STATES = EnumSet.of(
+      ServiceInstance.UniverseState.CREATING,
+      ServiceInstance.UniverseState.UPDATING,
+      ServiceInstance.UniverseState.DELETING);
+
+  private YugaByteServiceConfig adminConfig;
+  private YugaByteAdminService adminService;
+  private ServiceInstanceRepository instanceRepository;
+
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> nextRun;
+  private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+
+  @Autowired
+  public YugaByteUniverseReconciler(YugaByteServiceConfig adminConfig,
+                                    YugaByteAdminService adminService,
+                                    ServiceInstanceRepository instanceRepository) {
+    this.adminConfig = adminConfig;
+    this.adminService = adminService;
+    this.instanceRepository = instanceRepository;
+  }
+
+  public boolean isEnabled() {
+    return adminConfig.reconcilerEnabled;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!isEnabled()) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("universe-reconciler")
+        .setDaemon(true)
+        .build());
+    scheduleNext(0);
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs a pass right away and switches to the fast interval, called when a new operation is
+   * started on an instance.
+   */
+  public void wakeUp() {
+    if (scheduler == null) {
+      return;
+    }
+    wakeUpRequested.set(true);
+    scheduleNext(0);
+  }
+
+  private synchronized void scheduleNext(long delaySecs) {
+    if (scheduler.isShutdown()) {
+      return;
+    }
+    if (nextRun != null) {
+      nextRun.cancel(false);
+    }
+    nextRun = scheduler.schedule(this::run, delaySecs, TimeUnit.SECONDS);
+  }
+
+  private void run() {
+    wakeUpRequested.set(false);
+    // If the pass fails we don't know what is in flight, so keep polling at the fast rate.
+    boolean inFlight = true;
+    long startNanos = System.nanoTime();
+    String result = "failure";
+    try {
+      inFlight = reconcile();
+      result = "success";
+    } catch (RuntimeException e) {
+      logger.warn("Unable to reconcile universe states: " + e.getMessage());
+    } finally {
+      Metrics.timer("yugabyte.reconciler.runs", "result", result)
+          .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    scheduleNext(inFlight || wakeUpRequested.get()
+        ? adminConfig.reconcilerFastIntervalSecs
+        : adminConfig.reconcilerIdleIntervalSecs);
+  }
+
+  /**
+   * Brings the stored state of every in-flight instance up to date with YugaWare, and
+   * returns whether any of them are still in flight.
+   */
+  boolean reconcile() {
+    List<ServiceInstance> instances = instanceRepository.findByUniverseStateIn(IN_FLIGHT_STATES);
+    if (instances.isEmpty()) {
+      return false;
+    }
+    Map<String, UniverseStatus> statuses = adminService.getUniverseStatuses();
+    Map<Map.Entry<ServiceInstance.UniverseState, ServiceInstance.UniverseState>, List<String>>
+        changed = new HashMap<>();
+    boolean inFlight = false;
+    for (ServiceInstance si : instances) {
+      // The state of shared plan tenants is set by their provisioning job.
+      if (si.isShared()) {
+        continue;
+      }
+      ServiceInstance.UniverseState previousState = si.getUniverseState();
+      UniverseStatus status = statuses.get(si.getUniverseUUID());
+      if (status != null) {
+        si.updateState(status);
+      } else if (previousState == ServiceInstance.UniverseState.DELETING) {
+        si.updateState(ServiceInstance.UniverseState.DELETED);
+      }
+      if (si.getUniverseState() != previousState) {
+        adminService.invalidateUniverseEndpoints(si.getUniverseUUID());
+        changed.computeIfAbsent(Maps.immutableEntry(previousState, si.getUniverseState()),
+            transition -> new ArrayList<>()).add(si.getServiceInstanceId());
+      }
+      inFlight |= IN_FLIGHT_STATES.contains(si.getUniverseState());
+    }
+    int updated = 0;
+    int skipped = 0;
+    for (Map.Entry<Map.Entry<ServiceInstance.UniverseState, ServiceInstance.UniverseState>,
+        List<String>> entry : changed.entrySet()) {
+      int count = instanceRepository.updateStates(entry.getValue(), entry.getKey().getKey(),
+          entry.getKey().getValue());
+      updated += count;
+      skipped += entry.getValue().size() - count;
+    }
+    if (updated > 0) {
+      logger.info("Reconciled the state of " + updated + " service instances");
+    }
+    if (skipped > 0) {
+      // They are picked up again by the next pass if they are still in flight.
+      logger.info("Left " + skipped + " service instances that changed state during the pass");
+    }
+    return inFlight;
+  }
+}
@@ -0,0 +1,242 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.model.WarmUniverse;
+import com.yugabyte.servicebroker.repository.WarmUniverseRepository;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps warm_pool_size universes per plan created and LIVE ahead of time, so that new service
+ * instances with the plan defaults get one right away instead of waiting for a universe to be
+ * created. Instances asking for anything other than the defaults are provisioned as usual.
+ *
+ * YugaWare has no way to rename a universe, so a claimed universe keeps its pool name and the
+ * service instance record is what ties it to the instance.
+ */
+@Service
+public class YugaByteWarmPoolService {
+  private static final Log logger = LogFactory.getLog(YugaByteWarmPoolService.class);
+
+  private YugaByteServiceConfig adminConfig;
+  private CatalogConfig catalogConfig;
+  private YugaByteAdminService adminService;
+  private YugaByteMetadataService metadataService;
+  private WarmUniverseRepository warmUniverseRepository;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public YugaByteWarmPoolService(YugaByteServiceConfig adminConfig,
+                                 CatalogConfig catalogConfig,
+                                 YugaByteAdminService adminService,
+                                 YugaByteMetadataService metadataService,
+                                 WarmUniverseRepository warmUniverseRepository) {
+    this.adminConfig = adminConfig;
+    this.catalogConfig = catalogConfig;
+    this.adminService = adminService;
+    this.metadataService = metadataService;
+    this.warmUniverseRepository = warmUniverseRepository;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!adminConfig.warmPoolEnabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("warm-pool")
+        .setDaemon(true)
+        .build());
+    scheduler.scheduleWithFixedDelay(this::refillQuietly, 0,
+        adminConfig.warmPoolRefillIntervalSecs, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Hands out a ready universe for the plan of the request, if the pool has one and the
+   * request only asks for the plan defaults.
+   */
+  public Optional<String> claim(CreateServiceInstanceRequest request) {
+    PlanMetadata plan = catalogConfig.getPlan(request.getPlanId());
+    if (!adminConfig.warmPoolEnabled || plan == null || plan.getWarmPoolSize() == 0 ||
+        (request.getParameters() != null && !request.getParameters().isEmpty())) {
+      return Optional.empty();
+    }
+    for (WarmUniverse warmUniverse : warmUniverseRepository.findByPlanIdOrderByCreatedAt(
+        plan.getCode())) {
+      if (warmUniverse.getState() == WarmUniverse.State.READY &&
+          warmUniverseRepository.claim(warmUniverse.getUniverseUUID(),
+                                       WarmUniverse.State.READY) == 1) {
+        logger.info("Claimed warm universe " + warmUniverse.getUniverseUUID() +
+                    " for service instance " + request.getServiceInstanceId());
+        Metrics.counter("yugabyte.warm_pool.claims", "plan", plan.getCode(),
+            "result", "hit").increment();
+        // Start on its replacement now rather than at the next refill.
+        if (scheduler != null) {
+          scheduler.execute(this::refillQuietly);
+        }
+        return Optional.of(warmUniverse.getUniverseUUID());
+      }
+    }
+    Metrics.counter("yugabyte.warm_pool.claims", "plan", plan.getCode(),
+        "result", "miss").increment();
+    return Optional.empty();
+  }
+
+  private synchronized void refillQuietly() {
+    try {
+      refill();
+    } catch (RuntimeException e) {
+      logger.warn("Unable to refill the warm pool: " + e.getMessage());
+    }
+  }
+
+  void refill() {
+    Map<String, UniverseStatus> statuses = null;
+    for (PlanMetadata plan : catalogConfig.getPlans()) {
+      List<WarmUniverse> pool = warmUniverseRepository.findByPlanIdOrderByCreatedAt(
+          plan.getCode());
+      if (plan.getWarmPoolSize() == 0 && pool.isEmpty()) {
+        continue;
+      }
+      if (statuses == null && !pool.isEmpty()) {
+        statuses = adminService.getUniverseStatuses();
+      }
+      int pooled = 0;
+      for (WarmUniverse warmUniverse : pool) {
+        boolean surplus = pooled >= plan.getWarmPoolSize();
+        if (checkWarmUniverse(plan, warmUniverse, statuses, surplus)) {
+          pooled++;
+        }
+      }
+      for (; pooled < plan.getWarmPoolSize(); pooled++) {
+        createWarmUniverse(plan);
+      }
+    }
+  }
+
+  // Returns whether the universe is still in the pool after being checked.
+  private boolean checkWarmUniverse(PlanMetadata plan, WarmUniverse warmUniverse,
+                                    Map<String, UniverseStatus> statuses, boolean surplus) {
+    if (warmUniverse.getUniverseUUID() == null && !adoptWarmUniverse(warmUniverse, statuses)) {
+      return false;
+    }
+    String universeUUID = warmUniverse.getUniverseUUID();
+    UniverseStatus status = statuses.get(universeUUID);
+    if (status == null) {
+      logger.warn("Warm universe " + universeUUID + " no longer exists, dropping it");
+      warmUniverseRepository.deleteById(warmUniverse.getUniverseName());
+      return false;
+    }
+    if (warmUniverse.getState() == WarmUniverse.State.CREATING) {
+      if (status.isUpdateInProgress()) {
+        return true;
+      }
+      if (!status.isUpdateSucceeded()) {
+        logger.warn("Warm universe " + universeUUID + " failed to create, deleting it");
+        warmUniverseRepository.deleteById(warmUniverse.getUniverseName());
+        adminService.deleteUniverse(universeUUID);
+        return false;
+      }
+      warmUniverse.setReady();
+      warmUniverseRepository.save(warmUniverse);
+    }
+    long idleMillis = System.currentTimeMillis() - warmUniverse.getCreatedAt();
+    boolean tooOld = plan.getWarmPoolMaxIdleSecs() > 0 &&
+        idleMillis > TimeUnit.SECONDS.toMillis(plan.getWarmPoolMaxIdleSecs());
+    // Claim it ourselves so it can't be handed out while it is being deleted.
+    if ((tooOld || surplus) &&
+        warmUniverseRepository.claim(universeUUID, WarmUniverse.State.READY) == 1) {
+      logger.info("Retiring warm universe " + universeUUID + " of plan " + plan.getCode());
+      adminService.deleteUniverse(universeUUID);
+      return false;
+    }
+    return true;
+  }
+
+  // Finds the universe of a create that the broker never heard back about, by its name. Returns
+  // false and drops it from the pool if YugaWare never took the create.
+  private boolean adoptWarmUniverse(WarmUniverse warmUniverse,
+                                    Map<String, UniverseStatus> statuses) {
+    String universeName = warmUniverse.getUniverseName();
+    Optional<UniverseStatus> created = statuses.values().stream()
+        .filter(status -> universeName.equals(status.getName()))
+        .findFirst();
+    if (!created.isPresent()) {
+      logger.warn("Warm universe " + universeName + " was never created, dropping it");
+      warmUniverseRepository.deleteById(universeName);
+      return false;
+    }
+    warmUniverse.setUniverseUUID(created.get().getUniverseUUID());
+    warmUniverseRepository.save(warmUniverse);
+    logger.info("Adopted warm universe " + universeName + " (" + warmUniverse.getUniverseUUID() +
+                ")");
+    return true;
+  }
+
+  private void createWarmUniverse(PlanMetadata plan) {
+    String universeName = "warm-" + plan.getCode() + "-" +
+        UUID.randomUUID().toString().substring(0, 8);
+    CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+        .serviceInstanceId(universeName)
+        .planId(plan.getCode())
+        .parameters("universe_name", universeName)
+        .build();
+    JsonNode params = metadataService.getClusterPayload(request);
+    params = adminService.configureUniverse(params);
+    params = metadataService.updateGflags(params, request);
+    // Saved before the create is sent, so that a universe is never left running outside the
+    // pool. If the broker doesn't hear back, the next refill adopts it by its name.
+    WarmUniverse warmUniverse = new WarmUniverse(universeName, plan.getCode());
+    warmUniverseRepository.save(warmUniverse);
+    JsonNode response = adminService.createUniverse(params);
+    if (response.has("error")) {
+      warmUniverseRepository.deleteById(universeName);
+      throw new YugaByteServiceException(response.get("error").asText());
+    }
+    String universeUUID = response.get("universeUUID").asText();
+    warmUniverse.setUniverseUUID(universeUUID);
+    warmUniverseRepository.save(warmUniverse);
+    logger.info("Creating warm universe " + universeName + " (" + universeUUID + ") for plan " +
+                plan.getCode());
+  }
+}
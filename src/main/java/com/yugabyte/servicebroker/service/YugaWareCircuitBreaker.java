@@ -0,0 +1,133 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaWareUnavailableException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker for the YugaWare admin client. Calls that can't reach YugaWare, time out or
+ * get a 5xx back count as failures, and calls slower than the configured threshold count as
+ * slow. Once either rate passes its threshold the breaker opens and calls fail right away
+ * with {@link YugaWareUnavailableException} instead of tying up a request thread, until a
+ * few half-open probes show that YugaWare has recovered.
+ *
+ * Any other error, like a 4xx or a rejected auth token, means YugaWare is up and answering,
+ * so it counts as a success.
+ */
+public class YugaWareCircuitBreaker {
+  private static final Log logger = LogFactory.getLog(YugaWareCircuitBreaker.class);
+
+  private final CircuitBreaker circuitBreaker;
+  private final long openSecs;
+
+  private final Counter successCounter;
+  private final Counter failureCounter;
+  private final Counter rejectedCounter;
+
+  public YugaWareCircuitBreaker(YugaByteServiceConfig adminConfig) {
+    this.openSecs = adminConfig.circuitBreakerOpenSecs;
+    if (adminConfig.circuitBreakerEnabled) {
+      CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+          .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+          .slidingWindowSize(adminConfig.circuitBreakerWindowSize)
+          .minimumNumberOfCalls(adminConfig.circuitBreakerMinimumCalls)
+          .failureRateThreshold(adminConfig.circuitBreakerFailureRateThreshold)
+          .slowCallRateThreshold(adminConfig.circuitBreakerSlowCallRateThreshold)
+          .slowCallDurationThreshold(Duration.ofMillis(adminConfig.circuitBreakerSlowCallMs))
+          .waitDurationInOpenState(Duration.ofSeconds(adminConfig.circuitBreakerOpenSecs))
+          .permittedNumberOfCallsInHalfOpenState(adminConfig.circuitBreakerHalfOpenCalls)
+          .build();
+      this.circuitBreaker = CircuitBreaker.of("yugaware", config);
+      this.circuitBreaker.getEventPublisher().onStateTransition(event ->
+          logger.warn("YugaWare circuit breaker " + event.getStateTransition()));
+    } else {
+      this.circuitBreaker = null;
+    }
+
+    this.successCounter = Metrics.counter("yugabyte.admin.circuit_breaker.calls",
+        "outcome", "success");
+    this.failureCounter = Metrics.counter("yugabyte.admin.circuit_breaker.calls",
+        "outcome", "failure");
+    this.rejectedCounter = Metrics.counter("yugabyte.admin.circuit_breaker.calls",
+        "outcome", "rejected");
+    // 0 closed, 1 open, 2 half open.
+    Gauge.builder("yugabyte.admin.circuit_breaker.state", this, breaker -> {
+      CircuitBreaker.State state = breaker.getState();
+      return state == CircuitBreaker.State.OPEN ? 1 :
+          state == CircuitBreaker.State.HALF_OPEN ? 2 : 0;
+    }).register(Metrics.globalRegistry);
+  }
+
+  public CircuitBreaker.State getState() {
+    return circuitBreaker == null ? CircuitBreaker.State.DISABLED : circuitBreaker.getState();
+  }
+
+  public void reset() {
+    if (circuitBreaker != null) {
+      circuitBreaker.reset();
+    }
+  }
+
+  public <T> T call(String description, Supplier<T> call) {
+    if (circuitBreaker == null) {
+      return call.get();
+    }
+    if (!circuitBreaker.tryAcquirePermission()) {
+      rejectedCounter.increment();
+      throw new YugaWareUnavailableException("YugaWare is unavailable, not sending " +
+          description + ". Retry in " + openSecs + " seconds");
+    }
+    long startNanos = System.nanoTime();
+    try {
+      T result = call.get();
+      if (result instanceof ResponseEntity &&
+          ((ResponseEntity<?>) result).getStatusCode().is5xxServerError()) {
+        onFailure(startNanos, new RestClientException(description + " returned " +
+            ((ResponseEntity<?>) result).getStatusCode()));
+      } else {
+        onSuccess(startNanos);
+      }
+      return result;
+    } catch (RestClientException e) {
+      onFailure(startNanos, e);
+      throw e;
+    } catch (RuntimeException | Error e) {
+      onSuccess(startNanos);
+      throw e;
+    }
+  }
+
+  private void onSuccess(long startNanos) {
+    successCounter.increment();
+    circuitBreaker.onSuccess(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void onFailure(long startNanos, Throwable failure) {
+    failureCounter.increment();
+    circuitBreaker.onError(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS, failure);
+  }
+}
@@ -17,12 +17,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -53,6 +58,49 @@ public class CommonUtils {
     ).findFirst();
   }
 
+  /**
+   * Waits for all the given futures, but fails as soon as any one of them fails. The rest
+   * are then cancelled, so stages that have not started yet never run.
+   */
+  public static void awaitAll(CompletableFuture<?>... futures) {
+    CompletableFuture<Object> firstFailure = new CompletableFuture<>();
+    for (CompletableFuture<?> future : futures) {
+      future.whenComplete((result, error) -> {
+        if (error != null) {
+          firstFailure.completeExceptionally(error);
+        }
+      });
+    }
+    try {
+      CompletableFuture.anyOf(CompletableFuture.allOf(futures), firstFailure).join();
+    } catch (CompletionException e) {
+      for (CompletableFuture<?> future : futures) {
+        future.cancel(true);
+      }
+      throw unwrap(e);
+    }
+  }
+
+  /**
+   * Returns the exception a task actually failed with, stripping the wrappers added by
+   * futures, executors and caches. Errors are rethrown as is.
+   */
+  public static RuntimeException unwrap(Throwable throwable) {
+    Throwable cause = throwable;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException ||
+            cause instanceof UncheckedExecutionException || cause instanceof ExecutionError) &&
+           cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    return new RuntimeException(cause);
+  }
+
   public static ArrayNode convertGflagMapToJson(Map<String, Object> gflagsMap) {
     ObjectMapper mapper = new ObjectMapper();
     ArrayNode gFlags = mapper.createArrayNode();
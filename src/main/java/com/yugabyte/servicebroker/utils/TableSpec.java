@@ -0,0 +1,187 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A table that a binding asks to have created up front through its tables parameter, e.g.
+ * {"name": "orders", "columns": {"id": "uuid", "total": "int"}, "primary_key": ["id"],
+ * "tablets": 16}. Names and types go into DDL, so names are held to a strict form and types
+ * to a list of known ones.
+ */
+public class TableSpec {
+  private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+  // A type name, followed by either collection element types or size arguments.
+  private static final Pattern TYPE =
+      Pattern.compile("([a-z ]+?) ?(?:<([a-z ,]+)>|\\((\\d+)(?: ?, ?(\\d+))?\\))?");
+  // The column types of YSQL and YCQL that tables may use.
+  private static final Set<String> TYPES = ImmutableSet.of(
+      "bigint", "blob", "boolean", "bytea", "char", "date", "decimal", "double",
+      "double precision", "float", "inet", "int", "integer", "jsonb", "numeric", "real",
+      "smallint", "text", "time", "timestamp", "timestamptz", "timeuuid", "tinyint", "uuid",
+      "varchar", "varint");
+  // The types that take a length or a precision and scale, such as varchar(64).
+  private static final Set<String> SIZED_TYPES =
+      ImmutableSet.of("char", "decimal", "numeric", "varchar");
+  // The YCQL collections, by the number of element types they take.
+  private static final Map<String, Integer> COLLECTION_TYPES =
+      ImmutableMap.of("list", 1, "map", 2, "set", 1);
+  static final int MAX_TABLETS = 1024;
+
+  private final String name;
+  private final Map<String, String> columns;
+  private final List<String> primaryKey;
+  private final Integer tablets;
+
+  private TableSpec(String name, Map<String, String> columns, List<String> primaryKey,
+                    Integer tablets) {
+    this.name = name;
+    this.columns = columns;
+    this.primaryKey = primaryKey;
+    this.tablets = tablets;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  // The number of tablets to split the table into, null for the server default.
+  public Integer getTablets() {
+    return tablets;
+  }
+
+  /**
+   * Returns the CREATE TABLE statement for the table, in syntax that YSQL and YCQL share,
+   * followed by the given options.
+   */
+  public String getCreateStatement(String qualifiedName, String options) {
+    List<String> definitions = new ArrayList<>();
+    columns.forEach((column, type) -> definitions.add(column + " " + type));
+    definitions.add("PRIMARY KEY (" + String.join(", ", primaryKey) + ")");
+    return String.format("CREATE TABLE IF NOT EXISTS %s (%s)%s", qualifiedName,
+                         String.join(", ", definitions), options);
+  }
+
+  public static String checkIdentifier(String what, Object value) {
+    if (!(value instanceof String) || !IDENTIFIER.matcher((String) value).matches()) {
+      throw new IllegalArgumentException(what + " must be a lowercase identifier: " + value);
+    }
+    return (String) value;
+  }
+
+  /**
+   * Reads the tables parameter of a binding, throwing IllegalArgumentException if it is not
+   * well formed.
+   */
+  public static List<TableSpec> parse(Object tables) {
+    if (tables == null) {
+      return Collections.emptyList();
+    }
+    if (!(tables instanceof List)) {
+      throw new IllegalArgumentException("tables must be a list of tables");
+    }
+    List<TableSpec> specs = new ArrayList<>();
+    for (Object table : (List<?>) tables) {
+      if (!(table instanceof Map)) {
+        throw new IllegalArgumentException("Each of tables must be an object: " + table);
+      }
+      specs.add(parseTable((Map<?, ?>) table));
+    }
+    return specs;
+  }
+
+  // Returns the type in the form it goes into DDL, or null if it is not one of the known types.
+  static String checkType(String value) {
+    Matcher matcher = TYPE.matcher(value.trim().toLowerCase().replaceAll("\\s+", " "));
+    if (!matcher.matches()) {
+      return null;
+    }
+    String name = matcher.group(1);
+    if (matcher.group(2) != null) {
+      List<String> elements = Arrays.asList(matcher.group(2).trim().split(" ?, ?"));
+      if (!COLLECTION_TYPES.containsKey(name) ||
+          COLLECTION_TYPES.get(name) != elements.size() || !TYPES.containsAll(elements)) {
+        return null;
+      }
+      return name + "<" + String.join(", ", elements) + ">";
+    }
+    if (matcher.group(3) != null) {
+      if (!SIZED_TYPES.contains(name) ||
+          (matcher.group(4) != null && (name.equals("char") || name.equals("varchar")))) {
+        return null;
+      }
+      return name + "(" + matcher.group(3) +
+             (matcher.group(4) == null ? "" : ", " + matcher.group(4)) + ")";
+    }
+    return TYPES.contains(name) ? name : null;
+  }
+
+  private static TableSpec parseTable(Map<?, ?> table) {
+    String name = checkIdentifier("Table name", table.get("name"));
+    Object columnsValue = table.get("columns");
+    if (!(columnsValue instanceof Map) || ((Map<?, ?>) columnsValue).isEmpty()) {
+      throw new IllegalArgumentException("Table " + name + " needs columns");
+    }
+    Map<String, String> columns = new LinkedHashMap<>();
+    for (Map.Entry<?, ?> column : ((Map<?, ?>) columnsValue).entrySet()) {
+      String type = checkType(String.valueOf(column.getValue()));
+      if (type == null) {
+        throw new IllegalArgumentException("Unsupported type for " + name + "." +
+                                           column.getKey() + ": " + column.getValue());
+      }
+      columns.put(checkIdentifier("Column name", column.getKey()), type);
+    }
+
+    Object primaryKeyValue = table.get("primary_key");
+    List<?> primaryKeyNames = primaryKeyValue instanceof List
+        ? (List<?>) primaryKeyValue
+        : primaryKeyValue == null
+            ? Collections.emptyList()
+            : Arrays.asList(primaryKeyValue.toString().split(" *, *"));
+    if (primaryKeyNames.isEmpty()) {
+      throw new IllegalArgumentException("Table " + name + " needs a primary_key");
+    }
+    List<String> primaryKey = new ArrayList<>();
+    for (Object column : primaryKeyNames) {
+      if (!columns.containsKey(column)) {
+        throw new IllegalArgumentException("Primary key column " + column + " of " + name +
+                                           " is not one of its columns");
+      }
+      primaryKey.add((String) column);
+    }
+
+    Object tabletsValue = table.get("tablets");
+    Integer tablets = null;
+    if (tabletsValue != null) {
+      if (!(tabletsValue instanceof Integer) || (Integer) tabletsValue < 1 ||
+          (Integer) tabletsValue > MAX_TABLETS) {
+        throw new IllegalArgumentException("tablets of " + name + " must be a number from 1 to " +
+                                           MAX_TABLETS);
+      }
+      tablets = (Integer) tabletsValue;
+    }
+    return new TableSpec(name, columns, primaryKey, tablets);
+  }
+}
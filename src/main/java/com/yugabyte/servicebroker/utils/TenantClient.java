@@ -0,0 +1,24 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+/**
+ * A client of an API that service instances of shared plans get. Those instances are tenants of
+ * a shared universe, with their own database or keyspace named after the tenant. Credentials
+ * created with a `tenant` parameter only have access to it.
+ */
+public interface TenantClient {
+  void createTenant(String tenant);
+
+  void deleteTenant(String tenant);
+}
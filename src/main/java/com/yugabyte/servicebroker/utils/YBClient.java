@@ -18,10 +18,15 @@ import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
 import org.apache.commons.collections.map.HashedMap;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public abstract class YBClient {
@@ -30,22 +35,84 @@ public abstract class YBClient {
     YCQL,
     YEDIS;
 
-    public YBClient getInstance(List<HostAndPort> serviceHosts,
-                                YugaByteConfigRepository yugaByteConfigRepository) {
+    public YBClient getInstance(String universeUUID,
+                                List<HostAndPort> serviceHosts,
+                                YugaByteConfigRepository yugaByteConfigRepository,
+                                YBConnectionCache connectionCache) {
       switch (this) {
         case YCQL:
-          return new YCQLClient(serviceHosts, yugaByteConfigRepository);
+          return new YCQLClient(universeUUID, serviceHosts, yugaByteConfigRepository,
+                                connectionCache);
         case YEDIS:
-          return new YEDISClient(serviceHosts, yugaByteConfigRepository);
+          return new YEDISClient(universeUUID, serviceHosts, yugaByteConfigRepository,
+                                 connectionCache);
         case YSQL:
-          return new YSQLClient(serviceHosts, yugaByteConfigRepository);
+          return new YSQLClient(universeUUID, serviceHosts, yugaByteConfigRepository,
+                                connectionCache);
+      }
+      return null;
+    }
+
+    /* Parses a list of API names, or a comma separated string of them.
+    */
+    public static Set<ClientType> parse(Object apis) {
+      Collection<?> names = apis instanceof Collection
+          ? (Collection<?>) apis
+          : Arrays.asList(apis.toString().split(","));
+      Set<ClientType> clientTypes = EnumSet.noneOf(ClientType.class);
+      for (Object name : names) {
+        try {
+          clientTypes.add(valueOf(name.toString().trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("Unknown API in apis: " + name);
+        }
+      }
+      return clientTypes;
+    }
+  }
+
+  // The APIs that service instances of shared plans get, each with its own namespace per tenant.
+  public enum TenantClientType {
+    YSQL(ClientType.YSQL),
+    YCQL(ClientType.YCQL);
+
+    private final ClientType clientType;
+
+    TenantClientType(ClientType clientType) {
+      this.clientType = clientType;
+    }
+
+    public ClientType getClientType() {
+      return clientType;
+    }
+
+    public TenantClient getInstance(String universeUUID,
+                                    List<HostAndPort> serviceHosts,
+                                    YugaByteConfigRepository yugaByteConfigRepository,
+                                    YBConnectionCache connectionCache) {
+      switch (this) {
+        case YCQL:
+          return new YCQLClient(universeUUID, serviceHosts, yugaByteConfigRepository,
+                                connectionCache);
+        case YSQL:
+          return new YSQLClient(universeUUID, serviceHosts, yugaByteConfigRepository,
+                                connectionCache);
       }
       return null;
     }
   }
 
+  public static final Set<ClientType> TENANT_CLIENT_TYPES = Collections.unmodifiableSet(
+      Arrays.stream(TenantClientType.values())
+          .map(TenantClientType::getClientType)
+          .collect(Collectors.toCollection(() -> EnumSet.noneOf(ClientType.class))));
+
+  private String universeUUID;
+  protected String getUniverseUUID() { return universeUUID; }
   private List<HostAndPort> serviceHostPorts;
   protected List<HostAndPort> getServiceHostPorts() { return serviceHostPorts; }
+  private YBConnectionCache connectionCache;
+  protected YBConnectionCache getConnectionCache() { return connectionCache; }
   protected abstract int getDefaultPort();
   /* Parameters can be any additional params that get sent at the time of service key creation
      For now we only check to see if there is a param named `role` and use it, rest all are ignored.
@@ -53,12 +120,23 @@ public abstract class YBClient {
   protected abstract Map<String, String> createAuth(Map<String, Object> parameters);
   public abstract void deleteAuth(Map<String, String> credentials);
 
+  /* Drops the roles of many bindings of the universe at once, such as all those of an instance
+     being deleted. Clients that can run the DDL for all of them together override this.
+  */
+  public void deleteAuths(List<Map<String, String>> credentialsList) {
+    credentialsList.forEach(this::deleteAuth);
+  }
+
   private YugaByteConfigRepository yugaByteConfigRepository;
 
   @Autowired
-  public YBClient(List<HostAndPort> serviceHosts, YugaByteConfigRepository yugaByteConfigRepository) {
+  public YBClient(String universeUUID, List<HostAndPort> serviceHosts,
+                  YugaByteConfigRepository yugaByteConfigRepository,
+                  YBConnectionCache connectionCache) {
+    this.universeUUID = universeUUID;
     this.serviceHostPorts = serviceHosts;
     this.yugaByteConfigRepository = yugaByteConfigRepository;
+    this.connectionCache = connectionCache;
   }
 
   protected Map<String, String> getAdminCredentials(String clientType) {
@@ -74,13 +152,48 @@ public abstract class YBClient {
     yugaByteConfigRepository.save(newConfig);
   }
 
+  protected void deleteAdminCredentials(String clientType) {
+    if (yugaByteConfigRepository.existsById(clientType)) {
+      yugaByteConfigRepository.deleteById(clientType);
+    }
+  }
+
+  public static String getSystemRolesKey(ClientType clientType, String universeUUID) {
+    return clientType.name().toLowerCase() + "-roles-" + universeUUID;
+  }
+
+  /* System roles only need to be created once per universe. Once they are, that is recorded in
+     the config table, so later sessions, including those of later broker processes, skip the DDL.
+  */
+  protected void bootstrapSystemRoles(ClientType clientType, Runnable createSystemRoles) {
+    if (universeUUID == null) {
+      createSystemRoles.run();
+      return;
+    }
+    String key = getSystemRolesKey(clientType, universeUUID);
+    if (yugaByteConfigRepository.existsById(key)) {
+      return;
+    }
+    createSystemRoles.run();
+    yugaByteConfigRepository.save(new YugaByteConfig(key,
+        Collections.singletonMap("created_at", String.valueOf(System.currentTimeMillis()))));
+  }
+
   public Map<String, String> getCredentials(Map<String, Object> parameters) {
-    String serviceHost = serviceHostPorts.stream().map(sh -> sh.getHostText()).collect(Collectors.joining( "," ));
-    int servicePort = serviceHostPorts.get(0).getPortOrDefault(getDefaultPort());
     if (parameters == null) {
       parameters = new HashMap<>();
     }
     Map<String, String> credentials =  createAuth(parameters);
+    credentials.putAll(getConnectionCredentials());
+    return credentials;
+  }
+
+  /* The hosts and port of the credentials, for credentials whose role was created earlier.
+  */
+  public Map<String, String> getConnectionCredentials() {
+    String serviceHost = serviceHostPorts.stream().map(sh -> sh.getHostText()).collect(Collectors.joining( "," ));
+    int servicePort = serviceHostPorts.get(0).getPortOrDefault(getDefaultPort());
+    Map<String, String> credentials = new HashMap<>();
     credentials.put("host", serviceHost);
     credentials.put("port", String.valueOf(servicePort));
     return credentials;
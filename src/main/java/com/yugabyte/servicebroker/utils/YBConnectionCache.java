@@ -0,0 +1,281 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Session;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import redis.clients.jedis.JedisPool;
+
+import javax.sql.DataSource;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Admin connections to the database APIs of universes, shared by the clients so that a binding
+ * doesn't have to discover the cluster and open connections from scratch. Connections are
+ * kept per universe, node they were opened to, database and admin credentials, so that clients
+ * without a universe UUID never share them across universes. They are closed once they have been
+ * unused for a while, and closed right away when their universe is deleted.
+ *
+ * A client may still be using a connection that is dropped for being idle or for making room,
+ * so those are only closed after a grace period.
+ */
+public class YBConnectionCache {
+  private static final Log logger = LogFactory.getLog(YBConnectionCache.class);
+
+  private static final long CLEANUP_INTERVAL_SECS = 60;
+  // Longer than any admin DDL a client runs on a connection it got from the cache.
+  private static final long RETIRE_DELAY_SECS = 120;
+
+  private final Cache<Key, Session> ycqlSessions;
+  private final Cache<Key, HikariDataSource> ysqlDataSources;
+  private final Cache<Key, JedisPool> yedisPools;
+  private final int yedisTimeoutMs;
+  private final ScheduledExecutorService cleaner;
+  private final Set<Runnable> retiring = ConcurrentHashMap.newKeySet();
+
+  public YBConnectionCache(YugaByteServiceConfig adminConfig) {
+    this.cleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("api-connection-cleaner")
+        .setDaemon(true)
+        .build());
+    this.ycqlSessions = buildCache(adminConfig, "YCQL session",
+        session -> session.getCluster().closeAsync());
+    Gauge.builder("yugabyte.api_connections.ycql.sessions", ycqlSessions, Cache::size)
+        .register(Metrics.globalRegistry);
+    Gauge.builder("yugabyte.api_connections.ycql.connections", ycqlSessions,
+        YBConnectionCache::countOpenConnections).register(Metrics.globalRegistry);
+
+    this.ysqlDataSources = buildCache(adminConfig, "YSQL pool", HikariDataSource::close);
+    Gauge.builder("yugabyte.api_connections.ysql.pools", ysqlDataSources, Cache::size)
+        .register(Metrics.globalRegistry);
+    Gauge.builder("yugabyte.api_connections.ysql.connections", ysqlDataSources,
+        YBConnectionCache::countPooledConnections).register(Metrics.globalRegistry);
+
+    this.yedisPools = buildCache(adminConfig, "YEDIS pool", JedisPool::close);
+    this.yedisTimeoutMs = adminConfig.apiConnectionsYEDISTimeoutMs;
+    Gauge.builder("yugabyte.api_connections.yedis.pools", yedisPools, Cache::size)
+        .register(Metrics.globalRegistry);
+    Gauge.builder("yugabyte.api_connections.yedis.connections", yedisPools,
+        YBConnectionCache::countYEDISConnections).register(Metrics.globalRegistry);
+
+    // The caches only expire entries as they are used, so idle connections are swept separately.
+    cleaner.scheduleWithFixedDelay(() -> {
+      ycqlSessions.cleanUp();
+      ysqlDataSources.cleanUp();
+      yedisPools.cleanUp();
+    }, CLEANUP_INTERVAL_SECS, CLEANUP_INTERVAL_SECS, TimeUnit.SECONDS);
+  }
+
+  private <V> Cache<Key, V> buildCache(YugaByteServiceConfig adminConfig, String name,
+                                       Consumer<V> close) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(adminConfig.apiConnectionsMaxUniverses)
+        .expireAfterAccess(adminConfig.apiConnectionsIdleSecs, TimeUnit.SECONDS)
+        .removalListener((RemovalListener<Key, V>) removal -> {
+          String description = name + " to universe " + removal.getKey().universeUUID +
+              " (" + removal.getCause() + ")";
+          if (!removal.wasEvicted()) {
+            logger.info("Closing " + description);
+            close.accept(removal.getValue());
+            return;
+          }
+          logger.info("Closing " + description + " in " + RETIRE_DELAY_SECS + "s");
+          retire(() -> close.accept(removal.getValue()));
+        })
+        .build();
+  }
+
+  private void retire(Runnable close) {
+    Runnable closeOnce = new Runnable() {
+      @Override
+      public void run() {
+        if (retiring.remove(this)) {
+          close.run();
+        }
+      }
+    };
+    retiring.add(closeOnce);
+    try {
+      cleaner.schedule(closeOnce, RETIRE_DELAY_SECS, TimeUnit.SECONDS);
+    } catch (RejectedExecutionException e) {
+      closeOnce.run();
+    }
+  }
+
+  private static double countOpenConnections(Cache<Key, Session> sessions) {
+    int connections = 0;
+    for (Session session : sessions.asMap().values()) {
+      Session.State state = session.getState();
+      for (Host host : state.getConnectedHosts()) {
+        connections += state.getOpenConnections(host);
+      }
+    }
+    return connections;
+  }
+
+  private static double countPooledConnections(Cache<Key, HikariDataSource> dataSources) {
+    int connections = 0;
+    for (HikariDataSource dataSource : dataSources.asMap().values()) {
+      HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+      if (pool != null) {
+        connections += pool.getTotalConnections();
+      }
+    }
+    return connections;
+  }
+
+  private static double countYEDISConnections(Cache<Key, JedisPool> pools) {
+    int connections = 0;
+    for (JedisPool pool : pools.asMap().values()) {
+      connections += pool.getNumActive() + pool.getNumIdle();
+    }
+    return connections;
+  }
+
+  /**
+   * Returns the open YCQL session to the universe for the admin user, first connected through
+   * the given node, connecting with the given function if there is none.
+   */
+  public Session getYCQLSession(String universeUUID, HostAndPort node, String username,
+                                String password, Callable<Session> connect) {
+    try {
+      return ycqlSessions.get(new Key(universeUUID, node, null, username, password), connect);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      throw CommonUtils.unwrap(e);
+    }
+  }
+
+  /**
+   * Returns the YSQL connection pool to a database on a node of the universe for the admin user,
+   * creating it with the given function if there is none.
+   */
+  public DataSource getYSQLDataSource(String universeUUID, HostAndPort node, String database,
+                                      String username, String password,
+                                      Callable<HikariDataSource> create) {
+    try {
+      return ysqlDataSources.get(new Key(universeUUID, node, database, username, password),
+          create);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      throw CommonUtils.unwrap(e);
+    }
+  }
+
+  /**
+   * Returns the pool of YEDIS connections to one node of the universe, authenticating with the
+   * password if it is not null, creating it with the given function if there is none.
+   */
+  public JedisPool getYEDISPool(String universeUUID, HostAndPort hostAndPort, String password,
+                                Callable<JedisPool> create) {
+    try {
+      return yedisPools.get(new Key(universeUUID, hostAndPort, null, null, password), create);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      throw CommonUtils.unwrap(e);
+    }
+  }
+
+  public int getYEDISTimeoutMs() {
+    return yedisTimeoutMs;
+  }
+
+  /**
+   * Closes the YEDIS pools to a universe, called once its connections need a new password.
+   */
+  public void evictYEDISPools(String universeUUID) {
+    yedisPools.asMap().keySet().removeIf(key -> Objects.equals(key.universeUUID, universeUUID));
+  }
+
+  /**
+   * Closes the pooled connections to a database, which can't be dropped while they are open.
+   */
+  public void evictDatabase(String universeUUID, String database) {
+    ysqlDataSources.asMap().keySet().removeIf(key ->
+        Objects.equals(key.universeUUID, universeUUID) && Objects.equals(key.database, database));
+  }
+
+  /**
+   * Closes the connections to a universe, called when it is deleted.
+   */
+  public void evictUniverse(String universeUUID) {
+    ycqlSessions.asMap().keySet().removeIf(key -> Objects.equals(key.universeUUID, universeUUID));
+    ysqlDataSources.asMap().keySet().removeIf(key ->
+        Objects.equals(key.universeUUID, universeUUID));
+    evictYEDISPools(universeUUID);
+  }
+
+  public void close() {
+    ycqlSessions.invalidateAll();
+    ysqlDataSources.invalidateAll();
+    yedisPools.invalidateAll();
+    cleaner.shutdownNow();
+    // Those still waiting out their grace period are closed now too.
+    retiring.forEach(Runnable::run);
+  }
+
+  private static final class Key {
+    private final String universeUUID;
+    private final HostAndPort node;
+    private final String database;
+    private final String username;
+    private final String password;
+
+    private Key(String universeUUID, HostAndPort node, String database, String username,
+                String password) {
+      this.universeUUID = universeUUID;
+      this.node = node;
+      this.database = database;
+      this.username = username;
+      this.password = password;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(universeUUID, other.universeUUID) &&
+          Objects.equals(node, other.node) &&
+          Objects.equals(database, other.database) &&
+          Objects.equals(username, other.username) &&
+          Objects.equals(password, other.password);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(universeUUID, node, database, username, password);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Orders the nodes of a universe by how fast they accept a TCP connection from the broker,
+ * leaving out those that don't within the probe timeout, so that apps try close and healthy
+ * nodes first. Results are kept for a short while, so a burst of bindings to the same
+ * universe probes it once.
+ */
+public class YBEndpointProber {
+  private static final Log logger = LogFactory.getLog(YBEndpointProber.class);
+
+  private final boolean enabled;
+  private final int timeoutMs;
+  private final Cache<String, List<HostAndPort>> probedEndpoints;
+  private final ExecutorService executor;
+
+  public YBEndpointProber(YugaByteServiceConfig adminConfig) {
+    this.enabled = adminConfig.endpointProbeEnabled;
+    this.timeoutMs = adminConfig.endpointProbeTimeoutMs;
+    this.probedEndpoints = CacheBuilder.newBuilder()
+        .maximumSize(adminConfig.cacheMaxEntries)
+        .expireAfterWrite(adminConfig.endpointProbeTtlSecs, TimeUnit.SECONDS)
+        .build();
+    // Probes only wait on connects, their threads go away again once they are idle.
+    this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("endpoint-prober-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Returns the endpoints that answered, fastest first, probing them unless they were probed
+   * under the same key a moment ago.
+   */
+  public List<HostAndPort> order(String key, List<HostAndPort> hostAndPorts) {
+    if (!enabled || hostAndPorts.size() < 2) {
+      return hostAndPorts;
+    }
+    try {
+      return probedEndpoints.get(key, () -> probe(hostAndPorts));
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      throw CommonUtils.unwrap(e);
+    }
+  }
+
+  public void invalidate(String key) {
+    probedEndpoints.invalidate(key);
+  }
+
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  List<HostAndPort> probe(List<HostAndPort> hostAndPorts) {
+    Map<HostAndPort, Future<Long>> pending = new LinkedHashMap<>();
+    List<HostAndPort> unprobed = new ArrayList<>();
+    for (HostAndPort hostAndPort : hostAndPorts) {
+      if (hostAndPort.hasPort()) {
+        pending.put(hostAndPort, executor.submit(() -> connect(hostAndPort)));
+      } else {
+        unprobed.add(hostAndPort);
+      }
+    }
+    Map<HostAndPort, Long> latencies = new LinkedHashMap<>();
+    for (Map.Entry<HostAndPort, Future<Long>> entry : pending.entrySet()) {
+      String result = "reachable";
+      try {
+        latencies.put(entry.getKey(), entry.getValue().get());
+      } catch (ExecutionException e) {
+        result = "unreachable";
+        logger.info("Leaving out unreachable node " + entry.getKey() + ": " +
+                    e.getCause().getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return hostAndPorts;
+      }
+      Metrics.counter("yugabyte.endpoint_probes", "result", result).increment();
+    }
+    // The broker may not be able to reach nodes that apps can, so rather hand out all of
+    // them than none.
+    if (latencies.isEmpty()) {
+      return hostAndPorts;
+    }
+    List<HostAndPort> ordered = latencies.entrySet().stream()
+        .sorted(Comparator.comparing(Map.Entry::getValue))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+    ordered.addAll(unprobed);
+    return ordered;
+  }
+
+  // Returns how long the node took to accept a connection.
+  private long connect(HostAndPort hostAndPort) throws IOException {
+    long startNanos = System.nanoTime();
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(hostAndPort.getHostText(), hostAndPort.getPort()),
+                     timeoutMs);
+    }
+    return System.nanoTime() - startNanos;
+  }
+}
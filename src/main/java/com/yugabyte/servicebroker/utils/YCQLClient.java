@@ -13,27 +13,38 @@
 package com.yugabyte.servicebroker.utils;
 
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
+import com.yugabyte.servicebroker.model.UniversePlacement;
 import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import static com.yugabyte.servicebroker.utils.CommonUtils.generateRandomString;
 
-public class YCQLClient extends YBClient {
+public class YCQLClient extends YBClient implements TenantClient {
   private static final Log logger = LogFactory.getLog(YCQLClient.class);
 
   private static String DEFAULT_CASSANDRA_USER = "cassandra";
   private static String DEFAULT_CASSANDRA_PASSWORD = "cassandra";
   private String ADMIN_CREDENTIAL_KEY = "ycql-admin-user";
   private static int DEFAULT_YCQL_PORT = 9042;
+  // How many role drops deleteAuths keeps in flight on the session at a time.
+  private static int MAX_PENDING_DROPS = 32;
 
   private enum CQLRole  {
     ADMIN,
@@ -52,19 +63,14 @@ public class YCQLClient extends YBClient {
 
   private Session session;
 
-  public YCQLClient(List<HostAndPort> serviceHosts,
-                    YugaByteConfigRepository yugaByteConfigRepository) {
-    super(serviceHosts, yugaByteConfigRepository);
+  public YCQLClient(String universeUUID,
+                    List<HostAndPort> serviceHosts,
+                    YugaByteConfigRepository yugaByteConfigRepository,
+                    YBConnectionCache connectionCache) {
+    super(universeUUID, serviceHosts, yugaByteConfigRepository, connectionCache);
   }
 
   public Session getSession() {
-    Cluster.Builder builder = Cluster.builder();
-    getServiceHostPorts().forEach( serviceIpPort -> {
-      builder.addContactPointsWithPorts(new InetSocketAddress(
-          serviceIpPort.getHostText(),
-          serviceIpPort.getPortOrDefault(DEFAULT_YCQL_PORT)
-      ));
-    });
     // We will save the admin credentials in our config table.
     Map<String, String> adminCreds = getAdminCredentials(ADMIN_CREDENTIAL_KEY);
     boolean hasAdminCreds = !adminCreds.isEmpty();
@@ -75,14 +81,40 @@ public class YCQLClient extends YBClient {
       );
       setAdminCredentials(ADMIN_CREDENTIAL_KEY, adminCreds);
     }
-    builder.withCredentials(adminCreds.get("username"),
-                            adminCreds.get("password"));
-    Cluster cluster = builder.build();
-    session = cluster.connect();
-    createSystemRoles();
+    String username = adminCreds.get("username");
+    String password = adminCreds.get("password");
+    session = getConnectionCache().getYCQLSession(getUniverseUUID(),
+        getServiceHostPorts().get(0), username, password, () -> connect(username, password));
     return session;
   }
 
+  // Opens the session that the connection cache keeps for the universe.
+  private Session connect(String username, String password) {
+    Cluster.Builder builder = Cluster.builder();
+    getServiceHostPorts().forEach( serviceIpPort -> {
+      builder.addContactPointsWithPorts(new InetSocketAddress(
+          serviceIpPort.getHostText(),
+          serviceIpPort.getPortOrDefault(DEFAULT_YCQL_PORT)
+      ));
+    });
+    // The session only ever runs the odd DDL statement, one connection per node is plenty.
+    PoolingOptions poolingOptions = new PoolingOptions()
+        .setConnectionsPerHost(HostDistance.LOCAL, 1, 1)
+        .setConnectionsPerHost(HostDistance.REMOTE, 1, 1);
+    Cluster cluster = builder.withCredentials(username, password)
+        .withPoolingOptions(poolingOptions)
+        .withoutJMXReporting()
+        .build();
+    try {
+      session = cluster.connect();
+      bootstrapSystemRoles(ClientType.YCQL, this::createSystemRoles);
+      return session;
+    } catch (RuntimeException e) {
+      cluster.close();
+      throw e;
+    }
+  }
+
   private void createSystemRoles() {
     // We will also create two roles in the system, one is admin and other is
     // readonly, of course users can add their own roles and grant them.
@@ -110,11 +142,31 @@ public class YCQLClient extends YBClient {
         "and login = true and password = '" + password + "'";
 
     session.execute(createRole);
-    String role = (String) parameters.getOrDefault("role", "admin");
-    String grantRole = String.format("GRANT %s to %s", role, username);
-    session.execute(grantRole);
-
     Map<String, String> credentials = new HashMap();
+    String tenant = (String) parameters.get("tenant");
+    if (tenant != null) {
+      session.execute(String.format("GRANT ALL PERMISSIONS ON KEYSPACE %s TO %s",
+                                    tenant, username));
+      credentials.put("keyspace", tenant);
+    } else {
+      String role = (String) parameters.getOrDefault("role", "admin");
+      String grantRole = String.format("GRANT %s to %s", role, username);
+      session.execute(grantRole);
+    }
+
+    String keyspace = (String) parameters.get("keyspace");
+    if (keyspace != null) {
+      // Kept when the binding goes, so that the app finds its data again when rebound.
+      session.execute("CREATE KEYSPACE IF NOT EXISTS " + keyspace);
+      session.execute(String.format("GRANT ALL PERMISSIONS ON KEYSPACE %s TO %s",
+                                    keyspace, username));
+      for (TableSpec table : TableSpec.parse(parameters.get("tables"))) {
+        session.execute(table.getCreateStatement(keyspace + "." + table.getName(),
+            table.getTablets() == null ? "" : " WITH tablets = " + table.getTablets()));
+      }
+      credentials.put("keyspace", keyspace);
+    }
+
     credentials.put("username", username);
     credentials.put("password", password);
     return credentials;
@@ -129,7 +181,90 @@ public class YCQLClient extends YBClient {
       String username = credentials.get("username");
       String dropRole = "DROP ROLE IF EXISTS " + username;
       session.execute(dropRole);
-      session.close();
     }
   }
-}
\ No newline at end of file
+
+  @Override
+  public void deleteAuths(List<Map<String, String>> credentialsList) {
+    session = getSession();
+    // CQL batches only take DML, so pipeline the drops on the one session instead.
+    List<ResultSetFuture> pending = new ArrayList<>();
+    for (Map<String, String> credentials : credentialsList) {
+      if (!credentials.containsKey("username")) {
+        logger.warn("Role name is empty in credentials: " + credentials);
+        continue;
+      }
+      pending.add(session.executeAsync("DROP ROLE IF EXISTS " + credentials.get("username")));
+      if (pending.size() == MAX_PENDING_DROPS) {
+        pending.forEach(ResultSetFuture::getUninterruptibly);
+        pending.clear();
+      }
+    }
+    pending.forEach(ResultSetFuture::getUninterruptibly);
+  }
+
+  @Override
+  public void createTenant(String keyspace) {
+    session = getSession();
+    session.execute("CREATE KEYSPACE IF NOT EXISTS " + keyspace);
+  }
+
+  @Override
+  public void deleteTenant(String keyspace) {
+    session = getSession();
+    // Only empty keyspaces can be dropped.
+    for (Row row : session.execute(
+        "SELECT table_name FROM system_schema.tables WHERE keyspace_name = ?", keyspace)) {
+      session.execute(String.format("DROP TABLE IF EXISTS %s.%s",
+                                    keyspace, row.getString("table_name")));
+    }
+    session.execute("DROP KEYSPACE IF EXISTS " + keyspace);
+  }
+
+  /**
+   * Returns the nodes grouped the way the Cassandra drivers see them, a datacenter per region
+   * and a rack per zone, and the datacenter that a DC-aware load balancing policy should
+   * treat as local. That is localRegion if given, else the region with the most primary
+   * nodes. The local nodes are listed first in host.
+   */
+  public static Map<String, String> getLocalityCredentials(List<HostAndPort> hostAndPorts,
+                                                           UniversePlacement placement,
+                                                           String localRegion) {
+    Map<String, UniversePlacement.Node> nodes = new HashMap<>();
+    placement.getNodes().forEach(node -> nodes.put(node.getHost(), node));
+    Map<String, List<String>> datacenters = new TreeMap<>();
+    Map<String, List<String>> racks = new TreeMap<>();
+    Map<String, Integer> primaryNodes = new TreeMap<>();
+    for (HostAndPort hostAndPort : hostAndPorts) {
+      UniversePlacement.Node node = nodes.get(hostAndPort.getHostText());
+      if (node == null) {
+        continue;
+      }
+      datacenters.computeIfAbsent(node.getRegion(), r -> new ArrayList<>()).add(node.getHost());
+      racks.computeIfAbsent(node.getRegion() + "." + node.getZone(), r -> new ArrayList<>())
+          .add(node.getHost());
+      if (node.isPrimary()) {
+        primaryNodes.merge(node.getRegion(), 1, Integer::sum);
+      }
+    }
+    Map<String, String> credentials = new HashMap<>();
+    if (datacenters.isEmpty()) {
+      return credentials;
+    }
+    String localDatacenter = localRegion != null ? localRegion : primaryNodes.entrySet().stream()
+        .max(Map.Entry.comparingByValue())
+        .map(Map.Entry::getKey)
+        .orElse(datacenters.keySet().iterator().next());
+    List<String> localDatacenterHosts = datacenters.getOrDefault(localDatacenter,
+                                                                 new ArrayList<>());
+    credentials.put("host", hostAndPorts.stream()
+        .map(HostAndPort::getHostText)
+        .sorted(Comparator.comparing(host -> !localDatacenterHosts.contains(host)))
+        .collect(Collectors.joining(",")));
+    credentials.put("localDatacenter", localDatacenter);
+    datacenters.forEach((region, hosts) ->
+        credentials.put("datacenter." + region, String.join(",", hosts)));
+    racks.forEach((zone, hosts) -> credentials.put("rack." + zone, String.join(",", hosts)));
+    return credentials;
+  }
+}
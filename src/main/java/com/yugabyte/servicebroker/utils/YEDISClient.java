@@ -13,57 +13,186 @@
 package com.yugabyte.servicebroker.utils;
 
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import static com.yugabyte.servicebroker.utils.CommonUtils.generateRandomString;
 
 public class YEDISClient extends YBClient {
+  private static final Log logger = LogFactory.getLog(YEDISClient.class);
+
   private static int DEFAULT_YEDIS_PORT = 6379;
-  private String ADMIN_CREDENTIAL_KEY = "yedis-admin-user";
-  private Jedis client;
+  // Each universe has a password of its own, and the one being set on its nodes is kept until
+  // every node has it.
+  private static final String ADMIN_CREDENTIAL_KEY = "yedis-admin-user";
+  private static final String PENDING_CREDENTIAL_KEY = "yedis-admin-user-pending";
+  // The admin connections only run the odd config command, a couple per node is plenty.
+  private static final int POOL_SIZE = 2;
 
   @Override
   protected int getDefaultPort() {
     return DEFAULT_YEDIS_PORT;
   }
 
-  public YEDISClient(List<HostAndPort> serviceHosts,
-                     YugaByteConfigRepository yugaByteConfigRepository) {
-    super(serviceHosts, yugaByteConfigRepository);
+  public YEDISClient(String universeUUID,
+                     List<HostAndPort> serviceHosts,
+                     YugaByteConfigRepository yugaByteConfigRepository,
+                     YBConnectionCache connectionCache) {
+    super(universeUUID, serviceHosts, yugaByteConfigRepository, connectionCache);
+  }
+
+  public static String getAdminCredentialKey(String universeUUID) {
+    return ADMIN_CREDENTIAL_KEY + "-" + universeUUID;
+  }
+
+  public static String getPendingCredentialKey(String universeUUID) {
+    return PENDING_CREDENTIAL_KEY + "-" + universeUUID;
+  }
+
+  // Returns the pool that the connection cache keeps for the node.
+  private JedisPool getPool(HostAndPort hostAndPort, String password) {
+    return getConnectionCache().getYEDISPool(getUniverseUUID(), hostAndPort, password, () -> {
+      JedisPoolConfig config = new JedisPoolConfig();
+      config.setMaxTotal(POOL_SIZE);
+      config.setMaxIdle(POOL_SIZE);
+      config.setMinIdle(0);
+      config.setJmxEnabled(false);
+      return new JedisPool(config, hostAndPort.getHostText(),
+          hostAndPort.getPortOrDefault(DEFAULT_YEDIS_PORT),
+          getConnectionCache().getYEDISTimeoutMs(), password);
+    });
+  }
+
+  /**
+   * Runs the command on the first node that can be reached, trying the others in turn.
+   */
+  public <T> T withSession(String password, Function<Jedis, T> command) {
+    JedisConnectionException lastFailure =
+        new JedisConnectionException("No YEDIS hosts for universe " + getUniverseUUID());
+    for (HostAndPort hostAndPort : getServiceHostPorts()) {
+      try (Jedis client = getPool(hostAndPort, password).getResource()) {
+        return command.apply(client);
+      } catch (JedisConnectionException e) {
+        logger.warn("Unable to reach YEDIS on " + hostAndPort + ": " + e.getMessage());
+        lastFailure = e;
+      }
+    }
+    throw lastFailure;
   }
 
-  public Jedis getSession() {
-    HostAndPort hostAndPort = getServiceHostPorts().get(0);
-    client = new Jedis(hostAndPort.getHostText(), hostAndPort.getPortOrDefault(DEFAULT_YEDIS_PORT));
-    client.connect();
-    return client;
+  // Sets the password on every node at once. Each node keeps its own, and a node that was
+  // missed would still let anyone in. Nodes that already have it from an earlier attempt are
+  // set again with it.
+  private void setPassword(String password) {
+    List<HostAndPort> hostAndPorts = getServiceHostPorts();
+    if (hostAndPorts.isEmpty()) {
+      throw new RuntimeException("No YEDIS hosts for universe " + getUniverseUUID());
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(hostAndPorts.size(),
+        new ThreadFactoryBuilder().setNameFormat("yedis-requirepass-%d").setDaemon(true).build());
+    try {
+      Map<HostAndPort, Future<String>> pending = new LinkedHashMap<>();
+      for (HostAndPort hostAndPort : hostAndPorts) {
+        pending.put(hostAndPort, executor.submit(() -> {
+          try (Jedis client = getPool(hostAndPort, null).getResource()) {
+            return client.configSet("requirepass", password);
+          } catch (JedisDataException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("NOAUTH")) {
+              throw e;
+            }
+          }
+          try (Jedis client = getPool(hostAndPort, password).getResource()) {
+            return client.configSet("requirepass", password);
+          }
+        }));
+      }
+      List<HostAndPort> failed = new ArrayList<>();
+      for (Map.Entry<HostAndPort, Future<String>> entry : pending.entrySet()) {
+        try {
+          entry.getValue().get();
+        } catch (ExecutionException e) {
+          logger.error("Unable to set the YEDIS password on " + entry.getKey() + ": " +
+                       e.getCause());
+          failed.add(entry.getKey());
+        }
+      }
+      if (!failed.isEmpty()) {
+        throw new RuntimeException("Unable to set the YEDIS password on " + failed);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+      // Connections opened without the password are of no use from now on.
+      getConnectionCache().evictYEDISPools(getUniverseUUID());
+    }
+  }
+
+  private boolean requiresPassword() {
+    try {
+      withSession(null, Jedis::ping);
+      return false;
+    } catch (JedisDataException e) {
+      if (e.getMessage() == null || !e.getMessage().startsWith("NOAUTH")) {
+        throw e;
+      }
+      return true;
+    }
   }
 
   @Override
   protected Map<String, String> createAuth(Map<String, Object> parameters) {
     // We would only call this method the first time to create a auth, after that, we would just fetch
     // the auth from yugabyte_config table.
-    Map<String, String> credentials = getAdminCredentials(
-        ADMIN_CREDENTIAL_KEY
-    );
+    String adminKey = getAdminCredentialKey(getUniverseUUID());
+    Map<String, String> credentials = getAdminCredentials(adminKey);
 
     // If we have credentials in the yugabyte config table, we would just return that credential.
     if (!credentials.isEmpty()) {
       return credentials;
     }
 
-    client = getSession();
-    String password = generateRandomString(false);
-    client.configSet("requirepass", password);
-    client.flushAll();
-    client.disconnect();
+    // Brokers that kept one password for all universes only ever set it on the first of them,
+    // which is the universe that already asks for a password.
+    Map<String, String> legacy = getAdminCredentials(ADMIN_CREDENTIAL_KEY);
+    if (!legacy.isEmpty() && requiresPassword()) {
+      setAdminCredentials(adminKey, legacy);
+      return legacy;
+    }
+
+    // An earlier attempt that set the password on some of the nodes only has to finish the job.
+    // Its password is saved before any node gets it, so that none is left with one we don't know.
+    String pendingKey = getPendingCredentialKey(getUniverseUUID());
+    Map<String, String> pending = getAdminCredentials(pendingKey);
+    if (pending.isEmpty()) {
+      withSession(null, Jedis::flushAll);
+      pending.put("password", generateRandomString(false));
+      setAdminCredentials(pendingKey, pending);
+    }
+    String password = pending.get("password");
+    setPassword(password);
     credentials.put("password", password);
     // We will save the admin credentials in our config table.
-    setAdminCredentials(ADMIN_CREDENTIAL_KEY, credentials);
+    setAdminCredentials(adminKey, credentials);
+    deleteAdminCredentials(pendingKey);
     return credentials;
   }
 
@@ -72,4 +201,4 @@ public class YEDISClient extends YBClient {
   public void deleteAuth(Map<String, String> credentials) {
     return;
   }
-}
\ No newline at end of file
+}
@@ -12,22 +12,34 @@
  */
 package com.yugabyte.servicebroker.utils;
 
+import com.google.common.collect.Lists;
 import com.google.common.net.HostAndPort;
 import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Metrics;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import javax.sql.DataSource;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.yugabyte.servicebroker.utils.CommonUtils.generateRandomString;
 
-public class YSQLClient extends YBClient {
+public class YSQLClient extends YBClient implements TenantClient {
   private static final Log logger = LogFactory.getLog(YSQLClient.class);
 
   private static String DEFAULT_YSQL_USER = "yugabyte";
@@ -46,56 +58,93 @@ public class YSQLClient extends YBClient {
     }
   }
 
-  private Connection connection;
+  // Binding DDL is rare and short, a couple of admin connections per database is plenty.
+  private static final int POOL_SIZE = 2;
+  private static final long POOL_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final long POOL_CONNECTION_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+  // How many roles one of the statements run by deleteAuths names.
+  private static final int ROLES_PER_STATEMENT = 100;
+  private static final String CHECK_ROLE_STATEMENT =
+      "SELECT 1 FROM pg_catalog.pg_roles WHERE rolname = '%s'";
+  // A database made for bindings belongs to a role of its own, which every binding of it is
+  // a member of and acts as. What one binding creates is then still there for the next one
+  // after the first is unbound and its role dropped.
+  private static final String OWNER_ROLE_SUFFIX = "_owner";
+  private static final int MAX_IDENTIFIER_LENGTH = 63;
+  public static final int MAX_OWNED_DATABASE_LENGTH =
+      MAX_IDENTIFIER_LENGTH - OWNER_ROLE_SUFFIX.length();
 
-  public YSQLClient(List<HostAndPort> serviceHosts,
-                    YugaByteConfigRepository yugaByteConfigRepository) {
-    super(serviceHosts, yugaByteConfigRepository);
+  public YSQLClient(String universeUUID,
+                    List<HostAndPort> serviceHosts,
+                    YugaByteConfigRepository yugaByteConfigRepository,
+                    YBConnectionCache connectionCache) {
+    super(universeUUID, serviceHosts, yugaByteConfigRepository, connectionCache);
   }
 
-  private void getConnection() {
-    HostAndPort initialHostPort = getServiceHostPorts().get(0);
-    String jdbcUrl = String.format("jdbc:postgresql://%s:%d/%s", initialHostPort.getHostText(),
-            initialHostPort.getPortOrDefault(getDefaultPort()), DEFAULT_YSQL_DATABASE);
-
-    try {
-      connection = DriverManager.getConnection(jdbcUrl, DEFAULT_YSQL_USER, DEFAULT_YSQL_PASSWORD);
+  private void withConnection(String database, Consumer<Connection> task) {
+    DataSource dataSource = getConnectionCache().getYSQLDataSource(getUniverseUUID(),
+        getServiceHostPorts().get(0), database, DEFAULT_YSQL_USER, DEFAULT_YSQL_PASSWORD,
+        () -> createDataSource(database));
+    try (Connection connection = dataSource.getConnection()) {
+      task.accept(connection);
     } catch (SQLException e) {
       logger.error("Failed to connect to database: " + e);
       throw new RuntimeException(e);
     }
-    createSystemRoles();
   }
 
-  private void createSystemRoles() {
-    String checkRoleStatement = "SELECT 1 FROM pg_catalog.pg_roles WHERE rolname = '%s'";
+  // Creates the pool that the connection cache keeps for the database.
+  private HikariDataSource createDataSource(String database) {
+    HostAndPort initialHostPort = getServiceHostPorts().get(0);
+    String jdbcUrl = String.format("jdbc:postgresql://%s:%d/%s", initialHostPort.getHostText(),
+            initialHostPort.getPortOrDefault(getDefaultPort()), database);
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("ysql-" + getUniverseUUID() + "-" + database);
+    config.setJdbcUrl(jdbcUrl);
+    config.setUsername(DEFAULT_YSQL_USER);
+    config.setPassword(DEFAULT_YSQL_PASSWORD);
+    config.setMaximumPoolSize(POOL_SIZE);
+    config.setMinimumIdle(0);
+    config.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+    config.setConnectionTimeout(POOL_CONNECTION_TIMEOUT_MS);
+    config.setMetricRegistry(Metrics.globalRegistry);
+    HikariDataSource dataSource = new HikariDataSource(config);
+    if (database.equals(DEFAULT_YSQL_DATABASE)) {
+      try (Connection connection = dataSource.getConnection()) {
+        bootstrapSystemRoles(ClientType.YSQL, () -> createSystemRoles(connection));
+      } catch (SQLException | RuntimeException e) {
+        dataSource.close();
+        logger.error("Failed to create system roles: " + e);
+        throw new RuntimeException(e);
+      }
+    }
+    return dataSource;
+  }
+
+  private void createSystemRoles(Connection connection) {
     String createRoleStatement = "CREATE ROLE %s %s";
     for (YSQLRole role : YSQLRole.values()) {
-      ResultSet rs = executeQuery(String.format(checkRoleStatement, role.value));
-      try{
-        if (!rs.next()) {
-          executeUpdate(String.format(createRoleStatement, role.value, role));
-        } else {
-        }
-      } catch (SQLException e) {
-          logger.error(String.format("Failed to find roles: " + e));
-          throw new RuntimeException(e);
+      if (!exists(connection, String.format(CHECK_ROLE_STATEMENT, role.value))) {
+        executeUpdate(connection, String.format(createRoleStatement, role.value, role));
       }
     }
   }
 
-  private void executeUpdate(String query) {
-    try {
-      connection.createStatement().executeUpdate(query);
+  private void executeUpdate(Connection connection, String query) {
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(query);
     } catch (SQLException e) {
       logger.error(String.format("Failed to execute query: '%s'. Error: %s", query, e));
       throw new RuntimeException(e);
     }
   }
 
-  private ResultSet executeQuery(String query) {
-    try {
-      return connection.createStatement().executeQuery(query);
+  // Returns whether the query returns any rows.
+  private boolean exists(Connection connection, String query) {
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery(query)) {
+      return rs.next();
     } catch (SQLException e) {
       logger.error(String.format("Failed to execute query: '%s'. Error: %s", query, e));
       throw new RuntimeException(e);
@@ -109,35 +158,189 @@ public class YSQLClient extends YBClient {
 
   @Override
   protected Map<String, String> createAuth(Map<String, Object> parameters) {
-    getConnection();
     String username = generateRandomString(true).toLowerCase();
     String password = generateRandomString(false);
-    executeUpdate(String.format("CREATE ROLE %s LOGIN PASSWORD '%s'", username, password));
+    Map<String, String> credentials = new HashMap();
+    withConnection(DEFAULT_YSQL_DATABASE, connection -> {
+      executeUpdate(connection,
+          String.format("CREATE ROLE %s LOGIN PASSWORD '%s'", username, password));
 
-    String role = (String) parameters.getOrDefault("role", YSQLRole.SUPERUSER.value);
-    executeUpdate(String.format("GRANT %s to %s", role, username));
+      String tenant = (String) parameters.get("tenant");
+      if (tenant != null) {
+        executeUpdate(connection,
+            String.format("GRANT ALL ON DATABASE %s TO %s", tenant, username));
+        credentials.put("database", tenant);
+      } else {
+        String role = (String) parameters.getOrDefault("role", YSQLRole.SUPERUSER.value);
+        executeUpdate(connection, String.format("GRANT %s to %s", role, username));
+      }
+    });
+
+    String database = (String) parameters.get("database");
+    if (database != null) {
+      createDatabase(database, username, TableSpec.parse(parameters.get("tables")));
+      credentials.put("database", database);
+    }
 
-    Map<String, String> credentials = new HashMap();
     credentials.put("username", username);
     credentials.put("password", password);
     return credentials;
   }
 
+  static String getOwnerRole(String database) {
+    return database + OWNER_ROLE_SUFFIX;
+  }
+
+  // Creates the database and its owner role unless they exist already, which they do when an
+  // app is rebound, and makes the role a member of the owner role that acts as it there.
+  private void createDatabase(String database, String username, List<TableSpec> tables) {
+    String owner = getOwnerRole(database);
+    withConnection(DEFAULT_YSQL_DATABASE, connection -> {
+      if (!exists(connection, String.format(
+          "SELECT 1 FROM pg_catalog.pg_database WHERE datname = '%s'", database))) {
+        executeUpdate(connection, "CREATE DATABASE " + database);
+      }
+      if (!exists(connection, String.format(CHECK_ROLE_STATEMENT, owner))) {
+        executeUpdate(connection, "CREATE ROLE " + owner + " NOLOGIN");
+      }
+      executeUpdate(connection, String.format("ALTER DATABASE %s OWNER TO %s", database, owner));
+      executeUpdate(connection,
+          String.format("REVOKE ALL ON DATABASE %s FROM PUBLIC", database));
+      executeUpdate(connection, String.format("GRANT %s TO %s", owner, username));
+      executeUpdate(connection, String.format("ALTER ROLE %s IN DATABASE %s SET role TO %s",
+                                              username, database, owner));
+    });
+    if (tables.isEmpty()) {
+      return;
+    }
+    withConnection(database, connection -> {
+      for (TableSpec table : tables) {
+        executeUpdate(connection, table.getCreateStatement(table.getName(),
+            table.getTablets() == null ? "" : " SPLIT INTO " + table.getTablets() + " TABLETS"));
+        executeUpdate(connection,
+            String.format("ALTER TABLE %s OWNER TO %s", table.getName(), owner));
+      }
+    });
+  }
+
   @Override
   public void deleteAuth(Map<String, String> credentials) {
     if (!credentials.containsKey("username")) {
       logger.warn("Role name is empty in credentials: " + credentials);
     } else {
-      getConnection();
       String username = credentials.get("username");
+      if (credentials.containsKey("database")) {
+        // The role can't be dropped while it owns objects in the database.
+        String database = credentials.get("database");
+        withConnection(database, connection -> {
+          executeUpdate(connection, String.format("REASSIGN OWNED BY %s TO %s", username,
+                                                  getHeir(connection, database)));
+          executeUpdate(connection, "DROP OWNED BY " + username);
+        });
+      }
       String dropRole = "DROP ROLE IF EXISTS " + username;
-      executeUpdate(dropRole);
-      try {
-        connection.close();
-      } catch (SQLException e) {
-        logger.error("Failed to close YSQL connection: " + e);
-        throw new RuntimeException(e);
+      withConnection(DEFAULT_YSQL_DATABASE, connection -> executeUpdate(connection, dropRole));
+    }
+  }
+
+  @Override
+  public void deleteAuths(List<Map<String, String>> credentialsList) {
+    List<String> usernames = new ArrayList<>();
+    Map<String, List<String>> databaseUsernames = new HashMap<>();
+    for (Map<String, String> credentials : credentialsList) {
+      if (!credentials.containsKey("username")) {
+        logger.warn("Role name is empty in credentials: " + credentials);
+        continue;
+      }
+      String username = credentials.get("username");
+      usernames.add(username);
+      if (credentials.containsKey("database")) {
+        databaseUsernames.computeIfAbsent(credentials.get("database"), d -> new ArrayList<>())
+            .add(username);
       }
     }
+    // DROP ROLE and friends take a list of roles, so this is a statement per hundred roles
+    // rather than one per binding.
+    databaseUsernames.forEach((database, owners) -> withConnection(database, connection -> {
+      String heir = getHeir(connection, database);
+      for (String roles : joinRoles(owners)) {
+        executeUpdate(connection, String.format("REASSIGN OWNED BY %s TO %s", roles, heir));
+        executeUpdate(connection, "DROP OWNED BY " + roles);
+      }
+    }));
+    withConnection(DEFAULT_YSQL_DATABASE, connection -> {
+      for (String roles : joinRoles(usernames)) {
+        executeUpdate(connection, "DROP ROLE IF EXISTS " + roles);
+      }
+    });
+  }
+
+  // Returns the role that takes over what dropped roles owned in the database: its owner role
+  // for a database made for bindings, else the admin user that owns tenant databases.
+  private String getHeir(Connection connection, String database) {
+    String owner = getOwnerRole(database);
+    return exists(connection, String.format(CHECK_ROLE_STATEMENT, owner))
+        ? owner
+        : DEFAULT_YSQL_USER;
+  }
+
+  /**
+   * Returns connection URLs for the credentials that list every node, with the options that
+   * have the YugabyteDB smart drivers spread connections over the given zones.
+   */
+  public static Map<String, String> getConnectionUrls(Map<String, String> credentials,
+                                                      List<String> topologyKeys) {
+    String port = credentials.get("port");
+    String hosts = Arrays.stream(credentials.get("host").split(","))
+        .map(host -> host + ":" + port)
+        .collect(Collectors.joining(","));
+    String database = credentials.getOrDefault("database", DEFAULT_YSQL_DATABASE);
+    String username = encode(credentials.get("username"));
+    String password = encode(credentials.get("password"));
+    String zones = topologyKeys.isEmpty() ? "" : String.join(",", topologyKeys);
+
+    Map<String, String> urls = new HashMap<>();
+    urls.put("jdbcUrl", String.format(
+        "jdbc:yugabytedb://%s/%s?user=%s&password=%s&load-balance=true%s",
+        hosts, database, username, password, zones.isEmpty() ? "" : "&topology-keys=" + zones));
+    urls.put("uri", String.format(
+        "postgresql://%s:%s@%s/%s?load_balance=true%s",
+        username, password, hosts, database, zones.isEmpty() ? "" : "&topology_keys=" + zones));
+    return urls;
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Splits the roles into the lists named by each statement of deleteAuths.
+  static List<String> joinRoles(List<String> roles) {
+    return Lists.partition(roles, ROLES_PER_STATEMENT).stream()
+        .map(batch -> String.join(", ", batch))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void createTenant(String database) {
+    withConnection(DEFAULT_YSQL_DATABASE, connection -> {
+      if (!exists(connection, String.format(
+          "SELECT 1 FROM pg_catalog.pg_database WHERE datname = '%s'", database))) {
+        executeUpdate(connection, "CREATE DATABASE " + database);
+        // Other tenants of the universe must not be able to connect to it.
+        executeUpdate(connection,
+            String.format("REVOKE ALL ON DATABASE %s FROM PUBLIC", database));
+      }
+    });
+  }
+
+  @Override
+  public void deleteTenant(String database) {
+    getConnectionCache().evictDatabase(getUniverseUUID(), database);
+    withConnection(DEFAULT_YSQL_DATABASE,
+        connection -> executeUpdate(connection, "DROP DATABASE IF EXISTS " + database));
   }
-}
\ No newline at end of file
+}
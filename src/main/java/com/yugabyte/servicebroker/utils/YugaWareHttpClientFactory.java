@@ -0,0 +1,144 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds the pooled, keep-alive HTTP client used by the YugaWare admin RestTemplate, and
+ * publishes the connection pool state as yugabyte.admin.pool.* metrics.
+ */
+public class YugaWareHttpClientFactory {
+  private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
+
+  public static HttpComponentsClientHttpRequestFactory createRequestFactory(
+      YugaByteServiceConfig adminConfig) {
+    return createRequestFactory(adminConfig, Metrics.globalRegistry);
+  }
+
+  static HttpComponentsClientHttpRequestFactory createRequestFactory(
+      YugaByteServiceConfig adminConfig, MeterRegistry registry) {
+    CloseableHttpClient httpClient = HttpClients.custom()
+        .setConnectionManager(createConnectionManager(adminConfig, registry))
+        .setKeepAliveStrategy(createKeepAliveStrategy(adminConfig))
+        .setDefaultRequestConfig(createRequestConfig(adminConfig))
+        .evictExpiredConnections()
+        .evictIdleConnections(adminConfig.idleTimeoutSecs, TimeUnit.SECONDS)
+        .build();
+    return new HttpComponentsClientHttpRequestFactory(httpClient);
+  }
+
+  static PoolingHttpClientConnectionManager createConnectionManager(
+      YugaByteServiceConfig adminConfig, MeterRegistry registry) {
+    InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(registry);
+    connectionManager.setMaxTotal(adminConfig.maxConnections);
+    connectionManager.setDefaultMaxPerRoute(adminConfig.maxConnectionsPerRoute);
+    connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+    registerPoolMetrics(connectionManager, registry);
+    return connectionManager;
+  }
+
+  static ConnectionKeepAliveStrategy createKeepAliveStrategy(YugaByteServiceConfig adminConfig) {
+    long defaultKeepAliveMs = TimeUnit.SECONDS.toMillis(adminConfig.keepAliveSecs);
+    return (response, context) -> {
+      // Honor the server's Keep-Alive header if it sent one, otherwise use our default.
+      long keepAliveMs = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(
+          response, context);
+      return keepAliveMs > 0 ? keepAliveMs : defaultKeepAliveMs;
+    };
+  }
+
+  static RequestConfig createRequestConfig(YugaByteServiceConfig adminConfig) {
+    return RequestConfig.custom()
+        .setConnectTimeout(adminConfig.connectTimeoutMs)
+        .setSocketTimeout(adminConfig.readTimeoutMs)
+        .setConnectionRequestTimeout(adminConfig.connectionRequestTimeoutMs)
+        .build();
+  }
+
+  private static void registerPoolMetrics(PoolingHttpClientConnectionManager connectionManager,
+                                          MeterRegistry registry) {
+    registerPoolGauge("yugabyte.admin.pool.leased", connectionManager, registry,
+        PoolStats::getLeased);
+    registerPoolGauge("yugabyte.admin.pool.available", connectionManager, registry,
+        PoolStats::getAvailable);
+    registerPoolGauge("yugabyte.admin.pool.pending", connectionManager, registry,
+        PoolStats::getPending);
+    registerPoolGauge("yugabyte.admin.pool.max", connectionManager, registry, PoolStats::getMax);
+    Gauge.builder("yugabyte.admin.pool.utilization", connectionManager, cm -> {
+      PoolStats stats = cm.getTotalStats();
+      return stats.getMax() == 0 ? 0 : (double) stats.getLeased() / stats.getMax();
+    }).register(registry);
+  }
+
+  private static void registerPoolGauge(String name,
+                                        PoolingHttpClientConnectionManager connectionManager,
+                                        MeterRegistry registry,
+                                        ToDoubleFunction<PoolStats> stat) {
+    Gauge.builder(name, connectionManager, cm -> stat.applyAsDouble(cm.getTotalStats()))
+        .register(registry);
+  }
+
+  /**
+   * Connection manager that records how long requests wait to lease a connection from the pool.
+   */
+  private static class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    private final Timer leaseTimer;
+
+    InstrumentedConnectionManager(MeterRegistry registry) {
+      leaseTimer = registry.timer("yugabyte.admin.pool.lease.wait");
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      ConnectionRequest request = super.requestConnection(route, state);
+      return new ConnectionRequest() {
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit tunit)
+            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+          long startNanos = System.nanoTime();
+          try {
+            return request.get(timeout, tunit);
+          } finally {
+            leaseTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+          }
+        }
+
+        @Override
+        public boolean cancel() {
+          return request.cancel();
+        }
+      };
+    }
+  }
+}
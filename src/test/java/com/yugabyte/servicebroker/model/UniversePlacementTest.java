@@ -0,0 +1,57 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class UniversePlacementTest {
+  private static JsonNode node(String ip, String region, String az, String placementUuid) {
+    ObjectMapper mapper = new ObjectMapper();
+    return mapper.createObjectNode()
+        .put("placementUuid", placementUuid)
+        .set("cloudInfo", mapper.createObjectNode()
+            .put("private_ip", ip)
+            .put("cloud", "aws")
+            .put("region", region)
+            .put("az", az));
+  }
+
+  @Test
+  public void testTopologyKeysOfPrimaryCluster() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode universe = mapper.readTree("{\"universeDetails\": {\"clusters\": [" +
+        "{\"uuid\": \"c1\", \"clusterType\": \"PRIMARY\"}," +
+        "{\"uuid\": \"c2\", \"clusterType\": \"ASYNC\"}], \"nodeDetailsSet\": []}}");
+    ((ArrayNode) universe.path("universeDetails")
+        .path("nodeDetailsSet")).addAll(Arrays.asList(
+            node("10.0.0.2", "us-west-2", "us-west-2b", "c1"),
+            node("10.0.0.1", "us-west-2", "us-west-2a", "c1"),
+            node("10.0.0.3", "us-west-2", "us-west-2a", "c1"),
+            node("10.0.1.1", "us-east-1", "us-east-1a", "c2")));
+
+    UniversePlacement placement = UniversePlacement.fromUniverse(universe);
+    assertEquals(4, placement.getNodes().size());
+    assertFalse(placement.getNodes().get(3).isPrimary());
+    assertEquals(Arrays.asList("aws.us-west-2.us-west-2a", "aws.us-west-2.us-west-2b"),
+                 placement.getTopologyKeys());
+  }
+}
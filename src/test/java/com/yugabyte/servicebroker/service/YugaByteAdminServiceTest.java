@@ -15,9 +15,14 @@ package com.yugabyte.servicebroker.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.net.HostAndPort;
 import com.yugabyte.servicebroker.YugaByteServiceTestConfig;
+import com.yugabyte.servicebroker.exception.YugaByteAuthenticationException;
 import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.exception.YugaWareUnavailableException;
+import com.yugabyte.servicebroker.model.UniverseStatus;
 import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import com.yugabyte.servicebroker.utils.YBClient;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,11 +40,14 @@ import org.springframework.web.client.RestTemplate;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
@@ -67,6 +75,8 @@ public class YugaByteAdminServiceTest  {
   @After
   public void tearDown() {
     adminService.resetAuthToken();
+    adminService.invalidateMetadataCache();
+    adminService.resetCircuitBreaker();
   }
 
   private ObjectMapper mapper = new ObjectMapper();
@@ -135,7 +145,8 @@ public class YugaByteAdminServiceTest  {
     assertEquals(Arrays.asList("2", "1"), releases);
     mockServer.verify();
     mockServer.reset();
-    expectEndpointRequest(HttpMethod.GET, "", HttpStatus.OK, "{\"foo\": \"bar\"}");
+    adminService.invalidateMetadataCache();
+    // The cached token is reused as is, without validating it against YugaWare first.
     expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.OK, "[\"1\", \"2\", \"3\"]");
     releases = adminService.getReleases();
     mockServer.verify();
@@ -145,6 +156,90 @@ public class YugaByteAdminServiceTest  {
 
   }
 
+  @Test
+  public void testGetReleasesWithExpiredAuthToken() {
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.OK, "[\"1\", \"2\"]");
+    adminService.getReleases();
+    mockServer.verify();
+    mockServer.reset();
+    adminService.invalidateMetadataCache();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.UNAUTHORIZED, "");
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.OK, "[\"1\", \"2\", \"3\"]");
+    List<String> releases = adminService.getReleases();
+    mockServer.verify();
+    assertEquals(Arrays.asList("3", "2", "1"), releases);
+  }
+
+  @Test
+  public void testGetReleasesUnauthorizedAfterRefresh() {
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.FORBIDDEN, "");
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.FORBIDDEN, "");
+    try {
+      adminService.getReleases();
+      fail("Expected the replayed request to fail");
+    } catch (YugaByteAuthenticationException ae) {
+      assertTrue(ae.getMessage().contains("unauthorized"));
+    }
+    mockServer.verify();
+  }
+
+  @Test
+  public void testGetReleasesCached() {
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.OK, "[\"1\", \"2\"]");
+    assertEquals(Arrays.asList("2", "1"), adminService.getReleases());
+    assertEquals(Arrays.asList("2", "1"), adminService.getReleases());
+    mockServer.verify();
+    mockServer.reset();
+    adminService.invalidateMetadataCache();
+    expectEndpointRequest(HttpMethod.GET, "/releases", HttpStatus.OK, "[\"1\", \"2\", \"3\"]");
+    assertEquals(Arrays.asList("3", "2", "1"), adminService.getReleases());
+    mockServer.verify();
+  }
+
+  @Test
+  public void testGetRegionsCachedPerProvider() {
+    expectLoginRequest();
+    UUID providerUUID = UUID.randomUUID();
+    UUID otherProviderUUID = UUID.randomUUID();
+    expectEndpointRequest(HttpMethod.GET, "/providers/" + providerUUID + "/regions", HttpStatus.OK,
+        "[{\"code\": \"region-1\"}]");
+    expectEndpointRequest(HttpMethod.GET, "/providers/" + otherProviderUUID + "/regions",
+        HttpStatus.OK, "[{\"code\": \"region-2\"}]");
+    assertEquals("region-1", adminService.getRegions(providerUUID).get(0).get("code").asText());
+    assertEquals("region-2", adminService.getRegions(otherProviderUUID).get(0).get("code").asText());
+    assertEquals("region-1", adminService.getRegions(providerUUID).get(0).get("code").asText());
+    mockServer.verify();
+  }
+
+  @Test
+  public void testGetUniverseEndpointsCached() {
+    expectLoginRequest();
+    String universeUUID = UUID.randomUUID().toString();
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID + "/yqlservers",
+        HttpStatus.OK, "\"10.0.0.1:9042,10.0.0.2:9042\"");
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID + "/ysqlservers",
+        HttpStatus.OK, "\"10.0.0.1:5433\"");
+    List<HostAndPort> expected = Arrays.asList(HostAndPort.fromString("10.0.0.1:9042"),
+                                               HostAndPort.fromString("10.0.0.2:9042"));
+    assertEquals(expected, adminService.getEndpointForServiceType(YBClient.ClientType.YCQL, universeUUID));
+    assertEquals(expected, adminService.getEndpointForServiceType(YBClient.ClientType.YCQL, universeUUID));
+    adminService.getEndpointForServiceType(YBClient.ClientType.YSQL, universeUUID);
+    mockServer.verify();
+
+    mockServer.reset();
+    adminService.invalidateUniverseEndpoints(universeUUID);
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID + "/yqlservers",
+        HttpStatus.OK, "\"10.0.0.3:9042\"");
+    assertEquals(Arrays.asList(HostAndPort.fromString("10.0.0.3:9042")),
+        adminService.getEndpointForServiceType(YBClient.ClientType.YCQL, universeUUID));
+    mockServer.verify();
+  }
+
   @Test
   public void testGetReleasesFailure() {
     expectLoginRequest();
@@ -195,6 +290,29 @@ public class YugaByteAdminServiceTest  {
     }
   }
 
+  @Test
+  public void testCircuitBreakerFailsFastWhileYugaWareIsDown() {
+    expectLoginRequest();
+    for (int i = 0; i < 10; i++) {
+      expectEndpointRequest(HttpMethod.GET, "/providers", HttpStatus.SERVICE_UNAVAILABLE, "");
+    }
+    for (int i = 0; i < 10; i++) {
+      try {
+        adminService.getProviders();
+        fail("Expected the providers fetch to fail");
+      } catch (YugaByteServiceException ye) {
+        assertEquals("Unable to fetch providers", ye.getMessage());
+      }
+    }
+    mockServer.verify();
+    try {
+      adminService.getProviders();
+      fail("Expected the circuit breaker to reject the call");
+    } catch (YugaWareUnavailableException ue) {
+      assertTrue(ue.getMessage().startsWith("YugaWare is unavailable"));
+    }
+  }
+
   @Test
   public void testGetRegions() {
     expectLoginRequest();
@@ -387,6 +505,88 @@ public class YugaByteAdminServiceTest  {
     }
   }
 
+  @Test
+  public void testGetUniverseStatus() {
+    expectLoginRequest();
+    UUID universeUUID = UUID.randomUUID();
+    ObjectNode responseJson = mapper.createObjectNode();
+    responseJson.put("universeUUID", universeUUID.toString());
+    ObjectNode universeDetails = responseJson.putObject("universeDetails");
+    ObjectNode nodeDetails = universeDetails.putArray("nodeDetailsSet").addObject();
+    nodeDetails.put("nodeName", "yb-n1");
+    nodeDetails.put("updateInProgress", true);
+    universeDetails.putObject("lastTask").put("updateSucceeded", false);
+    universeDetails.put("updateInProgress", false);
+    universeDetails.put("updateSucceeded", true);
+    responseJson.putObject("resources").put("updateInProgress", true);
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID, HttpStatus.OK,
+        responseJson.toString());
+    UniverseStatus status = adminService.getUniverseStatus(universeUUID.toString());
+    mockServer.verify();
+    assertEquals(universeUUID.toString(), status.getUniverseUUID());
+    assertFalse(status.isUpdateInProgress());
+    assertTrue(status.isUpdateSucceeded());
+  }
+
+  @Test
+  public void testGetUniverseStatusWithExpiredAuthToken() {
+    expectLoginRequest();
+    UUID universeUUID = UUID.randomUUID();
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID,
+        HttpStatus.UNAUTHORIZED, "");
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID, HttpStatus.OK,
+        "{\"universeDetails\": {\"updateInProgress\": true}}");
+    UniverseStatus status = adminService.getUniverseStatus(universeUUID.toString());
+    mockServer.verify();
+    assertTrue(status.isUpdateInProgress());
+  }
+
+  @Test
+  public void testGetUniverseStatusFailure() {
+    expectLoginRequest();
+    UUID universeUUID = UUID.randomUUID();
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID,
+        HttpStatus.BAD_REQUEST, "{\"error\" : \"Invalid Universe UUID\"}");
+    try {
+      adminService.getUniverseStatus(universeUUID.toString());
+      fail("Expected the universe fetch to fail");
+    } catch (YugaByteServiceException ye) {
+      assertEquals("Unable to fetch universe " + universeUUID, ye.getLocalizedMessage());
+    }
+  }
+
+  @Test
+  public void testGetUniverseStatusMissingDetails() {
+    expectLoginRequest();
+    UUID universeUUID = UUID.randomUUID();
+    expectEndpointRequest(HttpMethod.GET, "/universes/" + universeUUID, HttpStatus.OK,
+        "{\"universeUUID\": \"" + universeUUID + "\", \"universeDetails\": {}}");
+    try {
+      adminService.getUniverseStatus(universeUUID.toString());
+      fail("Expected the universe fetch to fail");
+    } catch (YugaByteServiceException ye) {
+      assertEquals("Unable to fetch universe " + universeUUID, ye.getLocalizedMessage());
+    }
+  }
+
+  @Test
+  public void testGetUniverseStatuses() {
+    expectLoginRequest();
+    expectEndpointRequest(HttpMethod.GET, "/universes", HttpStatus.OK,
+        "[{\"universeUUID\": \"u1\", \"universeDetails\": " +
+        "{\"nodeDetailsSet\": [{\"updateInProgress\": false}], " +
+        "\"updateInProgress\": true, \"updateSucceeded\": false}}, " +
+        "{\"name\": \"second\", \"universeUUID\": \"u2\", \"universeDetails\": " +
+        "{\"updateInProgress\": false, \"updateSucceeded\": true}}]");
+    Map<String, UniverseStatus> statuses = adminService.getUniverseStatuses();
+    mockServer.verify();
+    assertEquals(2, statuses.size());
+    assertTrue(statuses.get("u1").isUpdateInProgress());
+    assertFalse(statuses.get("u2").isUpdateInProgress());
+    assertTrue(statuses.get("u2").isUpdateSucceeded());
+  }
+
   @Test
   public void testDeleteUniverseSuccess() {
     expectLoginRequest();
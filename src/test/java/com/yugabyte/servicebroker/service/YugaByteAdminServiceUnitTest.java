@@ -15,9 +15,17 @@ package com.yugabyte.servicebroker.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
 import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniverseStatus;
 import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
 import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
+import com.yugabyte.servicebroker.utils.YBClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,20 +33,47 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -53,8 +88,11 @@ public class YugaByteAdminServiceUnitTest {
   @Mock
   YugaByteConfigRepository mockYugaByteConfigRepository;
 
+  private CatalogConfig catalogConfig;
   private YugaByteAdminService adminService;
 
+  private static final String UNIVERSE_UUID = "someUniverseUUID";
+
   @Before
   public void setUp() {
     mockInstanceRepository = mock(ServiceInstanceRepository.class);
@@ -65,8 +103,19 @@ public class YugaByteAdminServiceUnitTest {
     mockAdminConfig.password = "password";
     mockAdminConfig.port= "9001";
     mockAdminConfig.user = "user";
-    adminService = new YugaByteAdminService(mockAdminConfig, mockInstanceRepository,
-        mockYugaByteConfigRepository, mockRestTemplate);
+    PlanMetadata xsmall = new PlanMetadata();
+    xsmall.setCode("xsmall");
+    PlanMetadata ysqlOnly = new PlanMetadata();
+    ysqlOnly.setCode("ysql-only");
+    ysqlOnly.setApis(Collections.singletonList("ysql"));
+    PlanMetadata yedisOnly = new PlanMetadata();
+    yedisOnly.setCode("yedis-only");
+    yedisOnly.setApis(Collections.singletonList("yedis"));
+    catalogConfig = new CatalogConfig();
+    catalogConfig.setPlans(Arrays.asList(xsmall, ysqlOnly, yedisOnly));
+    adminService = new YugaByteAdminService(mockAdminConfig, catalogConfig, mockInstanceRepository,
+        mockYugaByteConfigRepository, mockRestTemplate, MoreExecutors.newDirectExecutorService(),
+        MoreExecutors.newDirectExecutorService());
   }
 
   private HttpEntity getEntity(JsonNode bodyJson, String authToken) {
@@ -110,4 +159,343 @@ public class YugaByteAdminServiceUnitTest {
     List<String> releases = adminService.getReleases();
     assertEquals(Arrays.asList("2", "1"), releases);
   }
+
+  private void mockUniverseStatus(long delayMillis, AtomicInteger fetchCount,
+                                  RuntimeException failure) {
+    Mockito.when(mockRestTemplate.execute(
+        eq("http://localhost:9001/api/customers/someUUID/universes/" + UNIVERSE_UUID),
+        eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class)))
+        .thenAnswer(invocation -> {
+          fetchCount.incrementAndGet();
+          Thread.sleep(delayMillis);
+          if (failure != null) {
+            throw failure;
+          }
+          return new UniverseStatus(UNIVERSE_UUID, true, false);
+        });
+  }
+
+  private List<Future<UniverseStatus>> pollConcurrently(int numPolls) {
+    ExecutorService executor = Executors.newFixedThreadPool(numPolls);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<UniverseStatus>> polls = new ArrayList<>();
+    for (int i = 0; i < numPolls; i++) {
+      polls.add(executor.submit(() -> {
+        start.await();
+        return adminService.getUniverseStatus(UNIVERSE_UUID);
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    return polls;
+  }
+
+  @Test
+  public void testConcurrentUniverseStatusPollsAreCoalesced() throws Exception {
+    setAuthToken();
+    AtomicInteger fetchCount = new AtomicInteger();
+    mockUniverseStatus(300, fetchCount, null);
+    List<Future<UniverseStatus>> polls = pollConcurrently(8);
+    UniverseStatus first = polls.get(0).get(5, TimeUnit.SECONDS);
+    for (Future<UniverseStatus> poll : polls) {
+      assertSame(first, poll.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, fetchCount.get());
+
+    // Nothing is cached by default, so the next poll goes back to YugaWare.
+    adminService.getUniverseStatus(UNIVERSE_UUID);
+    assertEquals(2, fetchCount.get());
+  }
+
+  @Test
+  public void testConcurrentUniverseStatusPollsShareFailure() throws Exception {
+    setAuthToken();
+    AtomicInteger fetchCount = new AtomicInteger();
+    mockUniverseStatus(300, fetchCount,
+        new YugaByteServiceException("Unable to fetch universe " + UNIVERSE_UUID));
+    for (Future<UniverseStatus> poll : pollConcurrently(8)) {
+      try {
+        poll.get(5, TimeUnit.SECONDS);
+        fail("Expected the universe fetch to fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof YugaByteServiceException);
+      }
+    }
+    assertEquals(1, fetchCount.get());
+  }
+
+  @Test
+  public void testUniverseStatusMicroCache() {
+    mockAdminConfig.universeStatusCacheTtlMs = 60000;
+    mockAdminConfig.cacheMaxEntries = 10;
+    adminService = new YugaByteAdminService(mockAdminConfig, catalogConfig, mockInstanceRepository,
+        mockYugaByteConfigRepository, mockRestTemplate, MoreExecutors.newDirectExecutorService(),
+        MoreExecutors.newDirectExecutorService());
+    setAuthToken();
+    AtomicInteger fetchCount = new AtomicInteger();
+    mockUniverseStatus(0, fetchCount, null);
+    UniverseStatus first = adminService.getUniverseStatus(UNIVERSE_UUID);
+    assertSame(first, adminService.getUniverseStatus(UNIVERSE_UUID));
+    assertEquals(1, fetchCount.get());
+    adminService.invalidateMetadataCache();
+    adminService.getUniverseStatus(UNIVERSE_UUID);
+    assertEquals(2, fetchCount.get());
+  }
+
+  private static ServiceInstance createInstance(String planId) {
+    return new ServiceInstance(CreateServiceInstanceRequest.builder()
+        .serviceInstanceId("instance-1")
+        .serviceDefinitionId("yugabyte-db")
+        .planId(planId)
+        .build(), UNIVERSE_UUID);
+  }
+
+  @Test
+  public void testBindingClientTypes() {
+    assertEquals(EnumSet.allOf(YBClient.ClientType.class),
+        adminService.getBindingClientTypes(createInstance("xsmall"), null));
+    assertEquals(EnumSet.of(YBClient.ClientType.YSQL),
+        adminService.getBindingClientTypes(createInstance("ysql-only"), null));
+    assertEquals(EnumSet.of(YBClient.ClientType.YCQL, YBClient.ClientType.YEDIS),
+        adminService.getBindingClientTypes(createInstance("ysql-only"),
+            Collections.singletonMap("apis", Arrays.asList("ycql", "yedis"))));
+    assertEquals(EnumSet.of(YBClient.ClientType.YCQL),
+        adminService.getBindingClientTypes(createInstance("xsmall"),
+            Collections.singletonMap("apis", "ycql")));
+
+    ServiceInstance tenant = createInstance("xsmall");
+    tenant.setTenant("si_1");
+    try {
+      adminService.getBindingClientTypes(tenant, Collections.singletonMap("apis", "yedis"));
+      fail("Tenants have no YEDIS");
+    } catch (YugaByteServiceException e) {
+      // Expected.
+    }
+    ServiceInstance yedisTenant = createInstance("yedis-only");
+    yedisTenant.setTenant("si_1");
+    try {
+      adminService.getBindingClientTypes(yedisTenant, null);
+      fail("Tenants have no YEDIS");
+    } catch (YugaByteServiceException e) {
+      assertEquals("Plan yedis-only has none of the APIs [YSQL, YCQL] in its apis [yedis]",
+          e.getMessage());
+    }
+    try {
+      adminService.getBindingClientTypes(createInstance("xsmall"),
+          Collections.singletonMap("apis", "sql"));
+      fail("There is no sql API");
+    } catch (YugaByteServiceException e) {
+      assertEquals("Unknown API in apis: sql", e.getMessage());
+    }
+  }
+
+  private YugaByteAdminService createBindingService(ExecutorService executor) {
+    return createBindingService(executor, executor);
+  }
+
+  private YugaByteAdminService createBindingService(ExecutorService executor,
+                                                    ExecutorService bindingExecutor) {
+    mockAdminConfig.bindingTimeoutSecs = 1;
+    Mockito.when(mockInstanceRepository.findById("instance-1"))
+        .thenReturn(Optional.of(createInstance("xsmall")));
+    return Mockito.spy(new YugaByteAdminService(mockAdminConfig, catalogConfig,
+        mockInstanceRepository, mockYugaByteConfigRepository, mockRestTemplate, executor,
+        bindingExecutor));
+  }
+
+  // Pooled roles are handed back as they are, rather than completed with the universe endpoints.
+  private static void completeAsIs(YugaByteAdminService bindingService) {
+    Mockito.doAnswer(invocation -> invocation.getArgument(3)).when(bindingService)
+        .completeCredentials(any(), eq(UNIVERSE_UUID), any(), any());
+  }
+
+  private static CreateServiceInstanceBindingRequest createBindingRequest() {
+    return CreateServiceInstanceBindingRequest.builder()
+        .serviceInstanceId("instance-1")
+        .bindingId("binding-1")
+        .build();
+  }
+
+  private static Map<String, String> createCredentials(YBClient.ClientType clientType) {
+    return Collections.singletonMap("username", clientType.name().toLowerCase() + "_user");
+  }
+
+  @Test
+  public void testBindingDeadlineDropsLateCredentials() throws Exception {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    YugaByteAdminService bindingService = createBindingService(executor);
+    completeAsIs(bindingService);
+    Map<String, String> late = createCredentials(YBClient.ClientType.YCQL);
+    Mockito.doNothing().when(bindingService)
+        .deleteCredentials(YBClient.ClientType.YCQL, UNIVERSE_UUID, late);
+    CountDownLatch ycqlDone = new CountDownLatch(1);
+    try {
+      Map<String, Object> endpoints = bindingService.getUniverseServiceEndpoints(
+          createBindingRequest(), (clientType, parameters) -> {
+            if (clientType == YBClient.ClientType.YCQL) {
+              Uninterruptibles.awaitUninterruptibly(ycqlDone);
+            }
+            return Optional.of(createCredentials(clientType));
+          });
+      assertEquals(new HashSet<>(Arrays.asList("ysql", "yedis")), endpoints.keySet());
+      Mockito.verify(bindingService, Mockito.never()).deleteCredentials(
+          eq(YBClient.ClientType.YCQL), eq(UNIVERSE_UUID), eq(late));
+
+      ycqlDone.countDown();
+      Mockito.verify(bindingService, Mockito.timeout(5000))
+          .deleteCredentials(YBClient.ClientType.YCQL, UNIVERSE_UUID, late);
+    } finally {
+      ycqlDone.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testBindingRejectedWhenPoolIsSaturated() {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    // One thread and no queue, so the second API of the bind finds the pool full.
+    ExecutorService bindingExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+    YugaByteAdminService bindingService = createBindingService(executor, bindingExecutor);
+    completeAsIs(bindingService);
+    Mockito.doNothing().when(bindingService).deleteCredentials(any(), eq(UNIVERSE_UUID), anyMap());
+    CountDownLatch firstDone = new CountDownLatch(1);
+    Thread requestThread = Thread.currentThread();
+    Set<YBClient.ClientType> ranOnRequestThread = ConcurrentHashMap.newKeySet();
+    try {
+      bindingService.getUniverseServiceEndpoints(createBindingRequest(),
+          (clientType, parameters) -> {
+            if (Thread.currentThread() == requestThread) {
+              ranOnRequestThread.add(clientType);
+            }
+            Uninterruptibles.awaitUninterruptibly(firstDone);
+            return Optional.of(createCredentials(clientType));
+          });
+      fail("Expected the binding to be rejected");
+    } catch (YugaByteServiceException e) {
+      assertEquals("Too many bindings in progress, try again later", e.getMessage());
+    } finally {
+      firstDone.countDown();
+    }
+    try {
+      assertTrue(ranOnRequestThread.isEmpty());
+      // The API that did get a thread has its credentials dropped once they are created.
+      Mockito.verify(bindingService, Mockito.timeout(5000))
+          .deleteCredentials(any(), eq(UNIVERSE_UUID), anyMap());
+    } finally {
+      executor.shutdownNow();
+      bindingExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testBindingPartialFailure() {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    YugaByteAdminService bindingService = createBindingService(executor);
+    completeAsIs(bindingService);
+    try {
+      Map<String, Object> endpoints = bindingService.getUniverseServiceEndpoints(
+          createBindingRequest(), (clientType, parameters) -> {
+            if (clientType == YBClient.ClientType.YEDIS) {
+              throw new YugaByteServiceException("YEDIS is down");
+            }
+            return Optional.of(createCredentials(clientType));
+          });
+      assertEquals(new HashSet<>(Arrays.asList("ysql", "ycql")), endpoints.keySet());
+      assertEquals(createCredentials(YBClient.ClientType.YSQL), endpoints.get("ysql"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testBindingFailsWhenEveryApiFails() {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    YugaByteAdminService bindingService = createBindingService(executor);
+    try {
+      bindingService.getUniverseServiceEndpoints(createBindingRequest(),
+          (clientType, parameters) -> {
+            throw new YugaByteServiceException(clientType + " is down");
+          });
+      fail("Expected the binding to fail");
+    } catch (YugaByteServiceException e) {
+      assertEquals("Unable to create credentials for universe " + UNIVERSE_UUID,
+          e.getMessage());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSchemaParametersNeedTheirApi() {
+    YugaByteAdminService bindingService =
+        createBindingService(MoreExecutors.newDirectExecutorService());
+    Map<String, Object> keyspace = new HashMap<>();
+    keyspace.put("apis", Collections.singletonList("ysql"));
+    keyspace.put("keyspace", "shop");
+    Map<String, Object> database = new HashMap<>();
+    database.put("apis", Arrays.asList("ycql", "yedis"));
+    database.put("database", "shop");
+    for (Map<String, Object> parameters : Arrays.asList(keyspace, database)) {
+      try {
+        bindingService.getUniverseServiceEndpoints(
+            CreateServiceInstanceBindingRequest.builder()
+                .serviceInstanceId("instance-1")
+                .bindingId("binding-1")
+                .parameters(parameters)
+                .build(),
+            (clientType, p) -> Optional.of(createCredentials(clientType)));
+        fail("Accepted " + parameters);
+      } catch (YugaByteServiceException e) {
+        assertEquals(parameters == keyspace
+                         ? "keyspace needs the YCQL API, apis are [YSQL]"
+                         : "database needs the YSQL API, apis are [YCQL, YEDIS]",
+                     e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testRoleCredentials() {
+    Map<String, String> credentials = new HashMap<>();
+    credentials.put("username", "ysql_user");
+    credentials.put("password", "secret");
+    credentials.put("database", "orders");
+    credentials.put("host", "10.0.0.1,10.0.0.2");
+    credentials.put("port", "5433");
+    credentials.put("jdbcUrl", "jdbc:yugabytedb://10.0.0.1:5433,10.0.0.2:5433/orders");
+    Map<String, String> role = new HashMap<>();
+    role.put("username", "ysql_user");
+    role.put("password", "secret");
+    role.put("database", "orders");
+    assertEquals(role, YugaByteAdminService.getRoleCredentials(credentials));
+  }
+
+  @Test
+  public void testCatalogValidatesApis() {
+    catalogConfig.validate();
+
+    PlanMetadata typo = new PlanMetadata();
+    typo.setCode("typo");
+    typo.setApis(Collections.singletonList("sql"));
+    assertInvalidCatalog(typo, "Plan typo: Unknown API in apis: sql");
+
+    PlanMetadata sharedYEDIS = new PlanMetadata();
+    sharedYEDIS.setCode("shared-yedis");
+    sharedYEDIS.setMaxTenants(10);
+    sharedYEDIS.setApis(Collections.singletonList("yedis"));
+    assertInvalidCatalog(sharedYEDIS,
+        "Plan shared-yedis has no API in apis [yedis] that it can offer");
+  }
+
+  private static void assertInvalidCatalog(PlanMetadata plan, String message) {
+    CatalogConfig invalid = new CatalogConfig();
+    invalid.setPlans(Collections.singletonList(plan));
+    try {
+      invalid.validate();
+      fail("Expected plan " + plan.getCode() + " to be rejected");
+    } catch (IllegalStateException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
 }
@@ -0,0 +1,156 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.model.PooledCredential;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.repository.PooledCredentialRepository;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import com.yugabyte.servicebroker.utils.YBClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YugaByteCredentialPoolServiceTest {
+  private static final String INSTANCE_ID = "4c5ed1a2-0000-0000-0000-000000000000";
+
+  private YugaByteAdminService mockAdminService;
+  private ServiceInstanceRepository mockInstanceRepository;
+  private PooledCredentialRepository mockCredentialRepository;
+  private YugaByteCredentialPoolService credentialPoolService;
+
+  @Before
+  public void setUp() {
+    YugaByteServiceConfig adminConfig = new YugaByteServiceConfig();
+    adminConfig.credentialPoolEnabled = true;
+    PlanMetadata plan = new PlanMetadata();
+    plan.setCode("xsmall");
+    plan.setCredentialPoolSize(2);
+    CatalogConfig catalogConfig = new CatalogConfig();
+    catalogConfig.setPlans(Collections.singletonList(plan));
+
+    mockAdminService = mock(YugaByteAdminService.class);
+    mockInstanceRepository = mock(ServiceInstanceRepository.class);
+    mockCredentialRepository = mock(PooledCredentialRepository.class);
+    credentialPoolService = new YugaByteCredentialPoolService(adminConfig, catalogConfig,
+        mockAdminService, mockInstanceRepository, mockCredentialRepository);
+  }
+
+  private ServiceInstance createInstance(ServiceInstance.UniverseState state) {
+    CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+        .serviceInstanceId(INSTANCE_ID)
+        .serviceDefinitionId("yugabyte-db")
+        .planId("xsmall")
+        .build();
+    ServiceInstance si = new ServiceInstance(request, "u1");
+    si.updateState(state);
+    return si;
+  }
+
+  private PooledCredential pooledCredential(String user) {
+    PooledCredential credential = mock(PooledCredential.class);
+    when(credential.getId()).thenReturn((long) user.hashCode());
+    when(credential.getApi()).thenReturn("ycql");
+    when(credential.getCredentials()).thenReturn(Collections.singletonMap("username", user));
+    return credential;
+  }
+
+  @Test
+  public void testClaimSkipsCredentialsTakenByOthers() {
+    PooledCredential taken = pooledCredential("taken");
+    PooledCredential free = pooledCredential("free");
+    when(mockCredentialRepository.findTop5ByInstanceIdAndApiAndRoleOrderById(
+        INSTANCE_ID, "ycql", YugaByteCredentialPoolService.DEFAULT_ROLE))
+        .thenReturn(Arrays.asList(taken, free));
+    when(mockCredentialRepository.claim(taken.getId())).thenReturn(0);
+    when(mockCredentialRepository.claim(free.getId())).thenReturn(1);
+
+    Optional<Map<String, String>> credentials = credentialPoolService.claim(
+        INSTANCE_ID, YBClient.ClientType.YCQL, Collections.singletonMap("tenant", "si_4c5ed1a2"));
+    assertEquals(Optional.of(Collections.singletonMap("username", "free")), credentials);
+  }
+
+  @Test
+  public void testClaimOnlyForPooledParameters() {
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("keyspace", "orders");
+    assertFalse(credentialPoolService.claim(INSTANCE_ID, YBClient.ClientType.YCQL, parameters)
+        .isPresent());
+    verify(mockCredentialRepository, never())
+        .findTop5ByInstanceIdAndApiAndRoleOrderById(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void testRefillTopsUpEachApi() {
+    ServiceInstance si = createInstance(ServiceInstance.UniverseState.LIVE);
+    when(mockInstanceRepository.findByUniverseStateIn(any()))
+        .thenReturn(Collections.singletonList(si));
+    when(mockAdminService.getBindingClientTypes(si, null))
+        .thenReturn(EnumSet.of(YBClient.ClientType.YCQL, YBClient.ClientType.YSQL));
+    when(mockAdminService.getBindingParameters(si, null)).thenReturn(new HashMap<>());
+    when(mockCredentialRepository.countByInstanceIdAndApiAndRole(
+        INSTANCE_ID, "ycql", YugaByteCredentialPoolService.DEFAULT_ROLE)).thenReturn(2);
+    when(mockCredentialRepository.countByInstanceIdAndApiAndRole(
+        INSTANCE_ID, "ysql", YugaByteCredentialPoolService.DEFAULT_ROLE)).thenReturn(1);
+    Map<String, String> created = new HashMap<>();
+    created.put("username", "new");
+    created.put("host", "10.0.0.1");
+    created.put("jdbcUrl", "jdbc:yugabytedb://10.0.0.1:5433/yugabyte");
+    when(mockAdminService.createCredentials(any(), anyString(), any())).thenReturn(created);
+
+    credentialPoolService.refill();
+    verify(mockAdminService, never())
+        .createCredentials(YBClient.ClientType.YCQL, "u1", Collections.emptyMap());
+    ArgumentCaptor<PooledCredential> saved = ArgumentCaptor.forClass(PooledCredential.class);
+    verify(mockCredentialRepository, times(1)).save(saved.capture());
+    assertEquals("ysql", saved.getValue().getApi());
+    assertEquals(YugaByteCredentialPoolService.DEFAULT_ROLE, saved.getValue().getRole());
+    // Only the role is pooled, the rest is filled in when the credentials are claimed.
+    assertEquals(Collections.singletonMap("username", "new"), saved.getValue().getCredentials());
+  }
+
+  @Test
+  public void testDiscardDropsTenantRoles() {
+    ServiceInstance si = createInstance(ServiceInstance.UniverseState.DELETING);
+    si.setTenant("si_4c5ed1a2");
+    PooledCredential credential = pooledCredential("pooled");
+    when(mockCredentialRepository.findByInstanceId(INSTANCE_ID))
+        .thenReturn(Collections.singletonList(credential));
+
+    credentialPoolService.discard(si);
+    verify(mockAdminService).deleteCredentials(YBClient.ClientType.YCQL, "u1",
+        Collections.singletonMap("username", "pooled"));
+    verify(mockCredentialRepository).delete(credential);
+  }
+}
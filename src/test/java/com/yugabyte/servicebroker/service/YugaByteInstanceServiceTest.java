@@ -0,0 +1,102 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YugaByteInstanceServiceTest {
+  private YugaByteMetadataService mockMetadataService;
+  private YugaByteProvisioningService mockProvisioningService;
+  private YugaByteInstanceService instanceService;
+
+  @Before
+  public void setUp() {
+    PlanMetadata plan = new PlanMetadata();
+    plan.setCode("xsmall");
+    CatalogConfig catalogConfig = new CatalogConfig();
+    catalogConfig.setPlans(Collections.singletonList(plan));
+    mockMetadataService = mock(YugaByteMetadataService.class);
+    mockProvisioningService = mock(YugaByteProvisioningService.class);
+
+    instanceService = new YugaByteInstanceService(mock(ServiceInstanceRepository.class));
+    instanceService.catalogConfig = catalogConfig;
+    instanceService.metadataService = mockMetadataService;
+    instanceService.provisioningService = mockProvisioningService;
+    instanceService.warmPoolService = mock(YugaByteWarmPoolService.class);
+  }
+
+  private CreateServiceInstanceRequest createRequest(String parameter, Object value) {
+    return CreateServiceInstanceRequest.builder()
+        .serviceInstanceId("4c5ed1a2-0000-0000-0000-000000000000")
+        .planId("xsmall")
+        .parameters(parameter, value)
+        .build();
+  }
+
+  @Test
+  public void testCreateIsSubmitted() {
+    CreateServiceInstanceRequest request = createRequest("num_nodes", 5);
+    when(mockMetadataService.getClusterPayload(request))
+        .thenReturn(new ObjectMapper().createObjectNode());
+    assertTrue(instanceService.createServiceInstance(request).isAsync());
+    verify(mockProvisioningService).submitCreate(request);
+  }
+
+  @Test
+  public void testMalformedParameterFailsTheRequest() {
+    CreateServiceInstanceRequest request = createRequest("num_nodes", "five");
+    when(mockMetadataService.getClusterPayload(request))
+        .thenThrow(new NumberFormatException("For input string: \"five\""));
+    try {
+      instanceService.createServiceInstance(request);
+      fail("Accepted num_nodes five");
+    } catch (ServiceBrokerInvalidParametersException e) {
+      assertEquals("Service broker parameters are invalid: For input string: \"five\"",
+                   e.getMessage());
+    }
+    verify(mockProvisioningService, never()).submitCreate(any());
+  }
+
+  @Test
+  public void testUnknownVersionFailsTheRequest() {
+    CreateServiceInstanceRequest request = createRequest("yb_version", "0.9.0");
+    when(mockMetadataService.getClusterPayload(request))
+        .thenThrow(new YugaByteServiceException("Invalid YB Software version."));
+    try {
+      instanceService.createServiceInstance(request);
+      fail("Accepted yb_version 0.9.0");
+    } catch (YugaByteServiceException e) {
+      assertEquals("Invalid YB Software version.", e.getMessage());
+    }
+    verify(mockProvisioningService, never()).submitCreate(any());
+  }
+}
@@ -20,9 +20,11 @@ import com.yugabyte.servicebroker.YugaByteServiceTestConfig;
 import com.yugabyte.servicebroker.config.CatalogConfig;
 import com.yugabyte.servicebroker.config.PlanMetadata;
 import com.yugabyte.servicebroker.utils.CommonUtils;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
 import org.springframework.test.context.ContextConfiguration;
@@ -34,18 +36,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
 @ContextConfiguration(classes = YugaByteServiceTestConfig.class)
 public class YugaByteMetadataServiceTest {
 
-  @InjectMocks
   private YugaByteMetadataService metadataService;
 
   @Mock
@@ -54,6 +61,18 @@ public class YugaByteMetadataServiceTest {
   @Mock
   private YugaByteAdminService mockAdminService;
 
+  private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @Before
+  public void setUp() {
+    metadataService = new YugaByteMetadataService(mockAdminService, mockCatalogConfig, executor);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
   private Map<String, String> cloudInstanceTypeMap = ImmutableMap.of("aws", "c4.large", "gcp", "n1-standard-2", "kubernetes", "xsmall");
 
   private UUID setupCloudMetadata(String providerType, String kubeProvider) {
@@ -180,6 +199,46 @@ public class YugaByteMetadataServiceTest {
     }
   }
 
+  @Test
+  public void testGetClusterInvalidVersion() {
+    setupCloudMetadata("kubernetes", "pks");
+    CreateServiceInstanceRequest request = getServiceRequest(null);
+    request.getParameters().put("yb_version", "0.9.0");
+    try {
+      metadataService.getClusterPayload(request);
+      fail("Expected an invalid version error");
+    } catch (YugaByteServiceException ye) {
+      assertEquals("Invalid YB Software version.", ye.getMessage());
+    }
+  }
+
+  @Test
+  public void testGetClusterProviderNotFound() {
+    setupCloudMetadata("gcp", null);
+    CreateServiceInstanceRequest request = getServiceRequest(null);
+    request.getParameters().put("provider_type", "aws");
+    try {
+      metadataService.getClusterPayload(request);
+      fail("Expected a provider lookup error");
+    } catch (YugaByteServiceException ye) {
+      assertEquals("Unable to fetch Provider Metadata", ye.getMessage());
+    }
+    verify(mockAdminService, never()).getRegions(any());
+    verify(mockAdminService, never()).getAccessKeys(any());
+  }
+
+  @Test
+  public void testSharedUniversePayloadEnablesYSQL() {
+    setupCloudMetadata("kubernetes", "pks");
+    getServiceRequest(null);
+    PlanMetadata plan = mockCatalogConfig.getPlan("xsmall");
+    JsonNode response = metadataService.getClusterPayload(
+        YugaByteSharedUniverseService.createSharedUniverseRequest(plan, "shared-xsmall-1"));
+    JsonNode userIntent = response.get("clusters").get(0).get("userIntent");
+    assertEquals("shared-xsmall-1", userIntent.get("universeName").asText());
+    assertTrue(userIntent.get("enableYSQL").asBoolean());
+  }
+
   @Test
   public void testUpdateGflags() {
     CreateServiceInstanceRequest request = getServiceRequest(null);
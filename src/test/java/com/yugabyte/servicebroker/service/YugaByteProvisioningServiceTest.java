@@ -0,0 +1,341 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.exception.YugaWareUnavailableException;
+import com.yugabyte.servicebroker.model.ProvisioningJob;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.repository.ProvisioningJobRepository;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import com.yugabyte.servicebroker.repository.SharedUniverseRepository;
+import com.yugabyte.servicebroker.repository.WarmUniverseRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOperationInProgressException;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YugaByteProvisioningServiceTest {
+  private static final String INSTANCE_ID = "4c5ed1a2-0000-0000-0000-000000000000";
+
+  private YugaByteServiceConfig adminConfig;
+  private YugaByteAdminService mockAdminService;
+  private YugaByteMetadataService mockMetadataService;
+  private YugaByteSharedUniverseService mockSharedUniverseService;
+  private YugaByteBindingService mockBindingService;
+  private ServiceInstanceRepository mockInstanceRepository;
+  private ProvisioningJobRepository mockJobRepository;
+  private WarmUniverseRepository mockWarmUniverseRepository;
+  private YugaByteProvisioningService provisioningService;
+
+  private Map<String, ProvisioningJob> jobs = new HashMap<>();
+  private Map<String, ServiceInstance> instances = new HashMap<>();
+  private ObjectMapper mapper = new ObjectMapper();
+
+  @Before
+  public void setUp() {
+    adminConfig = new YugaByteServiceConfig();
+    adminConfig.provisioningThreads = 1;
+    adminConfig.provisioningMaxAttempts = 2;
+    adminConfig.provisioningRetryDelaySecs = 3600;
+    mockAdminService = mock(YugaByteAdminService.class);
+    mockMetadataService = mock(YugaByteMetadataService.class);
+    mockSharedUniverseService = mock(YugaByteSharedUniverseService.class);
+    mockBindingService = mock(YugaByteBindingService.class);
+    mockInstanceRepository = mock(ServiceInstanceRepository.class);
+    mockJobRepository = mock(ProvisioningJobRepository.class);
+    mockWarmUniverseRepository = mock(WarmUniverseRepository.class);
+
+    // Back the repositories with maps, the jobs are run by hand instead of by the workers.
+    when(mockJobRepository.save(any(ProvisioningJob.class))).thenAnswer(invocation -> {
+      ProvisioningJob job = invocation.getArgument(0);
+      jobs.put(job.getInstanceId(), job);
+      return job;
+    });
+    when(mockJobRepository.findById(anyString())).thenAnswer(invocation ->
+        Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+    when(mockJobRepository.findByStateIn(any())).thenReturn(Collections.emptyList());
+    when(mockInstanceRepository.save(any(ServiceInstance.class))).thenAnswer(invocation -> {
+      ServiceInstance si = invocation.getArgument(0);
+      instances.put(si.getServiceInstanceId(), si);
+      return si;
+    });
+    when(mockInstanceRepository.findById(anyString())).thenAnswer(invocation ->
+        Optional.ofNullable(instances.get(invocation.<String>getArgument(0))));
+
+    PlanMetadata dedicatedPlan = new PlanMetadata();
+    dedicatedPlan.setCode("xsmall");
+    PlanMetadata sharedPlan = new PlanMetadata();
+    sharedPlan.setCode("shared");
+    sharedPlan.setMaxTenants(10);
+    CatalogConfig catalogConfig = new CatalogConfig();
+    catalogConfig.setPlans(Arrays.asList(dedicatedPlan, sharedPlan));
+
+    provisioningService = new YugaByteProvisioningService(adminConfig, catalogConfig,
+        mockAdminService, mockMetadataService, mock(YugaByteUniverseReconciler.class),
+        mockSharedUniverseService, mock(YugaByteCredentialPoolService.class),
+        mockBindingService, mockInstanceRepository, mockJobRepository,
+        mockWarmUniverseRepository, mock(SharedUniverseRepository.class));
+    provisioningService.start();
+  }
+
+  @After
+  public void tearDown() {
+    provisioningService.stop();
+  }
+
+  private CreateServiceInstanceRequest createRequest() {
+    return createRequest("xsmall");
+  }
+
+  private CreateServiceInstanceRequest createRequest(String planId) {
+    return CreateServiceInstanceRequest.builder()
+        .serviceInstanceId(INSTANCE_ID)
+        .serviceDefinitionId("yugabyte-db")
+        .planId(planId)
+        .build();
+  }
+
+  private void mockCreateSteps() {
+    when(mockMetadataService.getUniverseName(any())).thenReturn("service-instance-4c5ed1a2");
+    JsonNode payload = mapper.createObjectNode();
+    when(mockMetadataService.getClusterPayload(any())).thenReturn(payload);
+    when(mockAdminService.configureUniverse(payload)).thenReturn(payload);
+    when(mockMetadataService.updateGflags(any(), any())).thenReturn(payload);
+  }
+
+  private void submitCreate() {
+    // Persist the job without letting the workers pick it up.
+    jobs.put(INSTANCE_ID, ProvisioningJob.create(createRequest()));
+    instances.put(INSTANCE_ID, new ServiceInstance(createRequest(), null));
+  }
+
+  @Test
+  public void testCreate() {
+    mockCreateSteps();
+    ObjectNode response = mapper.createObjectNode();
+    response.put("universeUUID", "u1");
+    when(mockAdminService.createUniverse(any())).thenReturn(response);
+    submitCreate();
+    assertNull(instances.get(INSTANCE_ID).getUniverseUUID());
+
+    provisioningService.run(INSTANCE_ID);
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+    assertEquals("Universe is being created: u1", jobs.get(INSTANCE_ID).getDescription());
+    assertEquals("u1", instances.get(INSTANCE_ID).getUniverseUUID());
+    assertEquals(ServiceInstance.UniverseState.CREATING,
+        instances.get(INSTANCE_ID).getUniverseState());
+  }
+
+  @Test
+  public void testResumedCreateAdoptsExistingUniverse() {
+    mockCreateSteps();
+    when(mockAdminService.findUniverseUUID("service-instance-4c5ed1a2")).thenReturn("u1");
+    submitCreate();
+    // The broker went down after creating the universe but before recording it.
+    jobs.get(INSTANCE_ID).markSubmitted();
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService, never()).createUniverse(any());
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+    assertEquals("u1", instances.get(INSTANCE_ID).getUniverseUUID());
+  }
+
+  @Test
+  public void testFirstAttemptIgnoresUniverseOfTheSameName() {
+    mockCreateSteps();
+    when(mockAdminService.findUniverseUUID("service-instance-4c5ed1a2")).thenReturn("u9");
+    ObjectNode response = mapper.createObjectNode();
+    response.put("universeUUID", "u1");
+    when(mockAdminService.createUniverse(any())).thenReturn(response);
+    submitCreate();
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService, never()).findUniverseUUID(anyString());
+    assertTrue(jobs.get(INSTANCE_ID).isSubmitted());
+    assertEquals("u1", instances.get(INSTANCE_ID).getUniverseUUID());
+  }
+
+  @Test
+  public void testResumedCreateRefusesOwnedUniverse() {
+    mockCreateSteps();
+    when(mockAdminService.findUniverseUUID("service-instance-4c5ed1a2")).thenReturn("u1");
+    when(mockWarmUniverseRepository.existsByUniverseUUID("u1")).thenReturn(true);
+    submitCreate();
+    jobs.get(INSTANCE_ID).markSubmitted();
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService, never()).createUniverse(any());
+    assertEquals(ProvisioningJob.State.FAILED, jobs.get(INSTANCE_ID).getState());
+    assertNull(instances.get(INSTANCE_ID).getUniverseUUID());
+  }
+
+  @Test
+  public void testCreateRetriesWhileYugaWareIsUnavailable() {
+    mockCreateSteps();
+    when(mockAdminService.createUniverse(any()))
+        .thenThrow(new YugaWareUnavailableException("YugaWare is unavailable"));
+    submitCreate();
+    provisioningService.run(INSTANCE_ID);
+    assertEquals(ProvisioningJob.State.PENDING, jobs.get(INSTANCE_ID).getState());
+    assertEquals("Waiting for YugaWare: YugaWare is unavailable",
+        jobs.get(INSTANCE_ID).getDescription());
+
+    // The create may have reached YugaWare, so the retry looks for the universe first.
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService).findUniverseUUID("service-instance-4c5ed1a2");
+    assertEquals(ProvisioningJob.State.FAILED, jobs.get(INSTANCE_ID).getState());
+    assertEquals(ServiceInstance.UniverseState.ERROR,
+        instances.get(INSTANCE_ID).getUniverseState());
+  }
+
+  @Test
+  public void testCreateFailure() {
+    mockCreateSteps();
+    when(mockAdminService.createUniverse(any()))
+        .thenThrow(new YugaByteServiceException("Unable to create universe"));
+    submitCreate();
+    provisioningService.run(INSTANCE_ID);
+    assertEquals(ProvisioningJob.State.FAILED, jobs.get(INSTANCE_ID).getState());
+    assertEquals("CREATE failed: Unable to create universe",
+        jobs.get(INSTANCE_ID).getDescription());
+    assertEquals(ServiceInstance.UniverseState.ERROR,
+        instances.get(INSTANCE_ID).getUniverseState());
+  }
+
+  @Test
+  public void testDeleteRejectedWhileCreating() {
+    submitCreate();
+    try {
+      provisioningService.submitDelete(instances.get(INSTANCE_ID));
+      fail("Expected the delete to be rejected");
+    } catch (ServiceBrokerOperationInProgressException e) {
+      assertEquals(ProvisioningJob.Operation.CREATE, jobs.get(INSTANCE_ID).getOperation());
+    }
+  }
+
+  @Test
+  public void testDeleteOfMissingUniverse() {
+    ServiceInstance si = new ServiceInstance(createRequest(), "u1");
+    instances.put(INSTANCE_ID, si);
+    jobs.put(INSTANCE_ID, ProvisioningJob.delete(si));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(Collections.emptyMap());
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService, never()).deleteUniverse(anyString());
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+  }
+
+  @Test
+  public void testDelete() {
+    ServiceInstance si = new ServiceInstance(createRequest(), "u1");
+    instances.put(INSTANCE_ID, si);
+    jobs.put(INSTANCE_ID, ProvisioningJob.delete(si));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u1", new UniverseStatus("u1", false, true)));
+    when(mockAdminService.deleteUniverse("u1")).thenReturn(mapper.createObjectNode());
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService).deleteUniverse("u1");
+    verify(mockBindingService).deleteServiceInstanceBindings(si);
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+  }
+
+  @Test
+  public void testResumedDeleteSkipsItsOwnDelete() {
+    ServiceInstance si = new ServiceInstance(createRequest(), "u1");
+    instances.put(INSTANCE_ID, si);
+    jobs.put(INSTANCE_ID, ProvisioningJob.delete(si));
+    jobs.get(INSTANCE_ID).markSubmitted();
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u1", new UniverseStatus("u1", true, false)));
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService, never()).deleteUniverse(anyString());
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+  }
+
+  @Test
+  public void testResumedDeleteDuringAnotherTask() {
+    ServiceInstance si = new ServiceInstance(createRequest(), "u1");
+    instances.put(INSTANCE_ID, si);
+    jobs.put(INSTANCE_ID, ProvisioningJob.delete(si));
+    // An earlier attempt that failed before sending the delete.
+    jobs.get(INSTANCE_ID).start();
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u1", new UniverseStatus("u1", true, false)));
+    when(mockAdminService.deleteUniverse("u1")).thenReturn(mapper.createObjectNode());
+    provisioningService.run(INSTANCE_ID);
+    verify(mockAdminService).deleteUniverse("u1");
+    assertTrue(jobs.get(INSTANCE_ID).isSubmitted());
+  }
+
+  @Test
+  public void testCreateTenantWaitsForSharedUniverse() {
+    jobs.put(INSTANCE_ID, ProvisioningJob.create(createRequest("shared")));
+    instances.put(INSTANCE_ID, new ServiceInstance(createRequest("shared"), null));
+    when(mockSharedUniverseService.reserve(any())).thenReturn(Optional.empty());
+    provisioningService.run(INSTANCE_ID);
+    assertEquals(ProvisioningJob.State.PENDING, jobs.get(INSTANCE_ID).getState());
+    assertEquals(0, jobs.get(INSTANCE_ID).getAttempts());
+    assertEquals("Waiting for a new shared universe of plan shared",
+        jobs.get(INSTANCE_ID).getDescription());
+
+    when(mockSharedUniverseService.reserve(any())).thenReturn(Optional.of("u1"));
+    provisioningService.run(INSTANCE_ID);
+    String tenant = "si_4c5ed1a2_0000_0000_0000_000000000000";
+    verify(mockAdminService).createTenant("u1", tenant);
+    verify(mockAdminService, never()).createUniverse(any());
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+    ServiceInstance si = instances.get(INSTANCE_ID);
+    assertTrue(si.isShared());
+    assertEquals(tenant, si.getTenant());
+    assertEquals("u1", si.getUniverseUUID());
+    assertEquals(ServiceInstance.UniverseState.LIVE, si.getUniverseState());
+  }
+
+  @Test
+  public void testDeleteTenant() {
+    ServiceInstance si = new ServiceInstance(createRequest("shared"), "u1");
+    si.setTenant("si_4c5ed1a2");
+    si.updateState(ServiceInstance.UniverseState.LIVE);
+    instances.put(INSTANCE_ID, si);
+    jobs.put(INSTANCE_ID, ProvisioningJob.delete(si));
+    provisioningService.run(INSTANCE_ID);
+    verify(mockBindingService).deleteServiceInstanceBindings(si);
+    verify(mockAdminService).deleteTenant("u1", "si_4c5ed1a2");
+    verify(mockSharedUniverseService).release("u1");
+    verify(mockAdminService, never()).deleteUniverse(anyString());
+    assertEquals(ProvisioningJob.State.SUCCEEDED, jobs.get(INSTANCE_ID).getState());
+    assertEquals(ServiceInstance.UniverseState.DELETED, si.getUniverseState());
+  }
+}
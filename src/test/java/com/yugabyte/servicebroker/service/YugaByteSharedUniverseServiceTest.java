@@ -0,0 +1,160 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.model.SharedUniverse;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.repository.SharedUniverseRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YugaByteSharedUniverseServiceTest {
+  private YugaByteAdminService mockAdminService;
+  private YugaByteMetadataService mockMetadataService;
+  private SharedUniverseRepository mockSharedUniverseRepository;
+  private PlanMetadata plan;
+  private YugaByteSharedUniverseService sharedUniverseService;
+  private ObjectMapper mapper = new ObjectMapper();
+
+  @Before
+  public void setUp() {
+    plan = new PlanMetadata();
+    plan.setCode("shared");
+    plan.setMaxTenants(10);
+    mockAdminService = mock(YugaByteAdminService.class);
+    mockMetadataService = mock(YugaByteMetadataService.class);
+    mockSharedUniverseRepository = mock(SharedUniverseRepository.class);
+    when(mockSharedUniverseRepository.reserve(anyString(), anyInt())).thenReturn(1);
+    sharedUniverseService = new YugaByteSharedUniverseService(mockAdminService,
+        mockMetadataService, mockSharedUniverseRepository);
+  }
+
+  private SharedUniverse sharedUniverse(String universeUUID, SharedUniverse.State state,
+                                        int tenantCount) {
+    SharedUniverse universe = mock(SharedUniverse.class);
+    when(universe.getUniverseUUID()).thenReturn(universeUUID);
+    when(universe.getPlanId()).thenReturn("shared");
+    when(universe.getState()).thenReturn(state);
+    when(universe.getTenantCount()).thenReturn(tenantCount);
+    return universe;
+  }
+
+  private void mockSharedUniverses(SharedUniverse... universes) {
+    when(mockSharedUniverseRepository.findByPlanId("shared")).thenReturn(Arrays.asList(universes));
+  }
+
+  private void mockCreateUniverse(String universeUUID) {
+    JsonNode payload = mapper.createObjectNode();
+    when(mockMetadataService.getClusterPayload(any())).thenReturn(payload);
+    when(mockAdminService.configureUniverse(payload)).thenReturn(payload);
+    when(mockMetadataService.updateGflags(any(), any())).thenReturn(payload);
+    ObjectNode response = mapper.createObjectNode();
+    response.put("universeUUID", universeUUID);
+    when(mockAdminService.createUniverse(payload)).thenReturn(response);
+  }
+
+  @Test
+  public void testReserveOnFullestUniverseWithRoom() {
+    mockSharedUniverses(
+        sharedUniverse("u1", SharedUniverse.State.READY, 3),
+        sharedUniverse("u2", SharedUniverse.State.READY, 10),
+        sharedUniverse("u3", SharedUniverse.State.READY, 8));
+    assertEquals(Optional.of("u3"), sharedUniverseService.reserve(plan));
+    verify(mockSharedUniverseRepository, never()).reserve("u2", 10);
+    verify(mockAdminService, never()).createUniverse(any());
+  }
+
+  @Test
+  public void testReserveSkipsUniverseFilledMeanwhile() {
+    mockSharedUniverses(
+        sharedUniverse("u1", SharedUniverse.State.READY, 3),
+        sharedUniverse("u2", SharedUniverse.State.READY, 9));
+    when(mockSharedUniverseRepository.reserve("u2", 10)).thenReturn(0);
+    assertEquals(Optional.of("u1"), sharedUniverseService.reserve(plan));
+  }
+
+  @Test
+  public void testReserveOfLastSlotOpensNewUniverse() {
+    mockSharedUniverses(sharedUniverse("u1", SharedUniverse.State.READY, 9));
+    mockCreateUniverse("u2");
+    assertEquals(Optional.of("u1"), sharedUniverseService.reserve(plan));
+
+    ArgumentCaptor<SharedUniverse> saved = ArgumentCaptor.forClass(SharedUniverse.class);
+    verify(mockSharedUniverseRepository).save(saved.capture());
+    assertEquals("u2", saved.getValue().getUniverseUUID());
+    assertEquals(SharedUniverse.State.CREATING, saved.getValue().getState());
+  }
+
+  @Test
+  public void testReserveWaitsForUniverseBeingCreated() {
+    mockSharedUniverses(
+        sharedUniverse("u1", SharedUniverse.State.READY, 10),
+        sharedUniverse("u2", SharedUniverse.State.CREATING, 0));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u2", new UniverseStatus("u2", true, false)));
+    assertFalse(sharedUniverseService.reserve(plan).isPresent());
+    verify(mockAdminService, never()).createUniverse(any());
+  }
+
+  @Test
+  public void testReserveOnUniverseThatFinishedCreating() {
+    SharedUniverse created = sharedUniverse("u1", SharedUniverse.State.CREATING, 0);
+    mockSharedUniverses(created);
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u1", new UniverseStatus("u1", false, true)));
+    // The universe only turns ready once it has been saved as such.
+    when(mockSharedUniverseRepository.save(created)).thenAnswer(invocation -> {
+      when(created.getState()).thenReturn(SharedUniverse.State.READY);
+      return created;
+    });
+    assertEquals(Optional.of("u1"), sharedUniverseService.reserve(plan));
+    verify(created).setReady();
+  }
+
+  @Test
+  public void testReserveReplacesFailedUniverse() {
+    mockSharedUniverses(sharedUniverse("u1", SharedUniverse.State.CREATING, 0));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u1", new UniverseStatus("u1", false, false)));
+    mockCreateUniverse("u2");
+    assertFalse(sharedUniverseService.reserve(plan).isPresent());
+    verify(mockSharedUniverseRepository).deleteById("u1");
+    verify(mockAdminService).deleteUniverse("u1");
+    verify(mockAdminService).createUniverse(any());
+  }
+
+  @Test
+  public void testTenantName() {
+    assertEquals("si_4c5ed1a2_0000_0000_0000_000000000000",
+        YugaByteSharedUniverseService.getTenantName("4C5ED1A2-0000-0000-0000-000000000000"));
+  }
+}
@@ -0,0 +1,144 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class YugaByteTokenManagerTest {
+  private RestTemplate mockRestTemplate;
+  private YugaByteServiceConfig adminConfig;
+  private YugaByteTokenManager tokenManager;
+  private AtomicInteger loginCount = new AtomicInteger();
+  private ObjectMapper mapper = new ObjectMapper();
+
+  @Before
+  public void setUp() {
+    mockRestTemplate = mock(RestTemplate.class);
+    adminConfig = new YugaByteServiceConfig();
+    adminConfig.hostname = "localhost";
+    adminConfig.port = "9001";
+    adminConfig.user = "user";
+    adminConfig.password = "password";
+    tokenManager = new YugaByteTokenManager(adminConfig, mockRestTemplate);
+  }
+
+  private void mockLogin(long delayMillis, HttpStatus status) {
+    when(mockRestTemplate.exchange(eq("http://localhost:9001/api/login"), eq(HttpMethod.POST),
+        any(HttpEntity.class), eq(JsonNode.class))).thenAnswer(invocation -> {
+          Thread.sleep(delayMillis);
+          ObjectNode responseJson = mapper.createObjectNode();
+          responseJson.put("authToken", "token-" + loginCount.incrementAndGet());
+          responseJson.put("customerUUID", "someUUID");
+          return new ResponseEntity<>(responseJson, status);
+        });
+  }
+
+  @Test
+  public void testConcurrentCallersShareOneLogin() throws Exception {
+    mockLogin(200, HttpStatus.OK);
+    int numThreads = 16;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<YugaByteTokenManager.Credentials>> results = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      results.add(executor.submit(() -> {
+        start.await();
+        return tokenManager.getCredentials();
+      }));
+    }
+    start.countDown();
+    YugaByteTokenManager.Credentials first = results.get(0).get(5, TimeUnit.SECONDS);
+    for (Future<YugaByteTokenManager.Credentials> result : results) {
+      assertSame(first, result.get(5, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+    assertEquals(1, loginCount.get());
+    assertEquals("token-1", first.getAuthToken());
+    assertEquals("someUUID", first.getCustomerUUID());
+  }
+
+  @Test
+  public void testRefreshOfStaleCredentialsLogsInOnce() {
+    mockLogin(0, HttpStatus.OK);
+    YugaByteTokenManager.Credentials stale = tokenManager.getCredentials();
+    YugaByteTokenManager.Credentials fresh = tokenManager.refresh(stale);
+    assertNotSame(stale, fresh);
+    assertEquals("token-2", fresh.getAuthToken());
+    // A second caller holding the same stale token picks up the new one without a login.
+    assertSame(fresh, tokenManager.refresh(stale));
+    assertEquals(2, loginCount.get());
+  }
+
+  @Test
+  public void testProactiveRefresh() throws InterruptedException {
+    mockLogin(0, HttpStatus.OK);
+    adminConfig.tokenRefreshSecs = 1;
+    YugaByteTokenManager.Credentials first = tokenManager.getCredentials();
+    assertSame(first, tokenManager.getCredentials());
+    Thread.sleep(1100);
+    assertEquals("token-2", tokenManager.getCredentials().getAuthToken());
+  }
+
+  @Test
+  public void testProactiveRefreshFailureKeepsTheCurrentToken() throws InterruptedException {
+    mockLogin(0, HttpStatus.OK);
+    adminConfig.tokenRefreshSecs = 1;
+    YugaByteTokenManager.Credentials first = tokenManager.getCredentials();
+    Thread.sleep(1100);
+    when(mockRestTemplate.exchange(eq("http://localhost:9001/api/login"), eq(HttpMethod.POST),
+        any(HttpEntity.class), eq(JsonNode.class)))
+        .thenThrow(new ResourceAccessException("Connection refused"));
+    assertSame(first, tokenManager.getCredentials());
+  }
+
+  @Test
+  public void testLoginFailure() {
+    mockLogin(0, HttpStatus.INTERNAL_SERVER_ERROR);
+    try {
+      tokenManager.getCredentials();
+      fail("Expected login to fail");
+    } catch (YugaByteServiceException ye) {
+      assertEquals("Unable to authenticate with YugaWare", ye.getMessage());
+    }
+  }
+}
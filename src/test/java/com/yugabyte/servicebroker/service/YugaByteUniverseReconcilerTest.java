@@ -0,0 +1,136 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.model.ServiceInstance;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.repository.ServiceInstanceRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.ignoreStubs;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class YugaByteUniverseReconcilerTest {
+  private YugaByteAdminService mockAdminService;
+  private ServiceInstanceRepository mockInstanceRepository;
+  private YugaByteUniverseReconciler reconciler;
+
+  @Before
+  public void setUp() {
+    mockAdminService = mock(YugaByteAdminService.class);
+    mockInstanceRepository = mock(ServiceInstanceRepository.class);
+    YugaByteServiceConfig adminConfig = new YugaByteServiceConfig();
+    adminConfig.reconcilerEnabled = false;
+    reconciler = new YugaByteUniverseReconciler(adminConfig, mockAdminService,
+        mockInstanceRepository);
+  }
+
+  private ServiceInstance createInstance(String universeUUID, ServiceInstance.UniverseState state) {
+    CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+        .serviceInstanceId("instance-" + universeUUID)
+        .serviceDefinitionId("yugabyte-db")
+        .planId("xsmall")
+        .build();
+    ServiceInstance si = new ServiceInstance(request, universeUUID);
+    si.updateState(state);
+    return si;
+  }
+
+  @Test
+  public void testNoInstancesInFlight() {
+    when(mockInstanceRepository.findByUniverseStateIn(any())).thenReturn(Collections.emptyList());
+    assertFalse(reconciler.reconcile());
+    verify(mockAdminService, never()).getUniverseStatuses();
+  }
+
+  @Test
+  public void testReconcileUpdatesChangedInstancesByTransition() {
+    ServiceInstance created = createInstance("u1", ServiceInstance.UniverseState.CREATING);
+    ServiceInstance failed = createInstance("u2", ServiceInstance.UniverseState.CREATING);
+    ServiceInstance stillCreating = createInstance("u3", ServiceInstance.UniverseState.CREATING);
+    ServiceInstance deleted = createInstance("u4", ServiceInstance.UniverseState.DELETING);
+    ServiceInstance stillDeleting = createInstance("u5", ServiceInstance.UniverseState.DELETING);
+    when(mockInstanceRepository.findByUniverseStateIn(any())).thenReturn(
+        Arrays.asList(created, failed, stillCreating, deleted, stillDeleting));
+
+    Map<String, UniverseStatus> statuses = new HashMap<>();
+    statuses.put("u1", new UniverseStatus("u1", false, true));
+    statuses.put("u2", new UniverseStatus("u2", false, false));
+    statuses.put("u3", new UniverseStatus("u3", true, false));
+    statuses.put("u5", new UniverseStatus("u5", true, false));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(statuses);
+
+    assertTrue(reconciler.reconcile());
+    assertEquals(ServiceInstance.UniverseState.LIVE, created.getUniverseState());
+    assertEquals(ServiceInstance.UniverseState.ERROR, failed.getUniverseState());
+    assertEquals(ServiceInstance.UniverseState.CREATING, stillCreating.getUniverseState());
+    assertEquals(ServiceInstance.UniverseState.DELETED, deleted.getUniverseState());
+    assertEquals(ServiceInstance.UniverseState.DELETING, stillDeleting.getUniverseState());
+
+    verify(mockInstanceRepository).updateStates(Collections.singletonList("instance-u1"),
+        ServiceInstance.UniverseState.CREATING, ServiceInstance.UniverseState.LIVE);
+    verify(mockInstanceRepository).updateStates(Collections.singletonList("instance-u2"),
+        ServiceInstance.UniverseState.CREATING, ServiceInstance.UniverseState.ERROR);
+    verify(mockInstanceRepository).updateStates(Collections.singletonList("instance-u4"),
+        ServiceInstance.UniverseState.DELETING, ServiceInstance.UniverseState.DELETED);
+    verifyNoMoreInteractions(ignoreStubs(mockInstanceRepository));
+    verify(mockAdminService).invalidateUniverseEndpoints("u1");
+    verify(mockAdminService, never()).invalidateUniverseEndpoints("u3");
+  }
+
+  @Test
+  public void testReconcileLastInFlightInstance() {
+    ServiceInstance created = createInstance("u1", ServiceInstance.UniverseState.CREATING);
+    when(mockInstanceRepository.findByUniverseStateIn(any()))
+        .thenReturn(Collections.singletonList(created));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(
+        Collections.singletonMap("u1", new UniverseStatus("u1", false, true)));
+    assertFalse(reconciler.reconcile());
+    assertEquals(ServiceInstance.UniverseState.LIVE, created.getUniverseState());
+  }
+
+  @Test
+  public void testReconcileGroupsInstancesWithTheSameTransition() {
+    ServiceInstance first = createInstance("u1", ServiceInstance.UniverseState.CREATING);
+    ServiceInstance second = createInstance("u2", ServiceInstance.UniverseState.CREATING);
+    when(mockInstanceRepository.findByUniverseStateIn(any()))
+        .thenReturn(Arrays.asList(first, second));
+    Map<String, UniverseStatus> statuses = new HashMap<>();
+    statuses.put("u1", new UniverseStatus("u1", false, true));
+    statuses.put("u2", new UniverseStatus("u2", false, true));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(statuses);
+    // The second instance started deleting during the pass, so only one row is updated.
+    when(mockInstanceRepository.updateStates(any(), any(), any())).thenReturn(1);
+
+    assertFalse(reconciler.reconcile());
+    verify(mockInstanceRepository).updateStates(Arrays.asList("instance-u1", "instance-u2"),
+        ServiceInstance.UniverseState.CREATING, ServiceInstance.UniverseState.LIVE);
+    verify(mockInstanceRepository, never()).saveAll(any());
+  }
+}
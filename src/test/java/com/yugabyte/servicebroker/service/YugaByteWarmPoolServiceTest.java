@@ -0,0 +1,203 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yugabyte.servicebroker.config.CatalogConfig;
+import com.yugabyte.servicebroker.config.PlanMetadata;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteServiceException;
+import com.yugabyte.servicebroker.model.UniverseStatus;
+import com.yugabyte.servicebroker.model.WarmUniverse;
+import com.yugabyte.servicebroker.repository.WarmUniverseRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YugaByteWarmPoolServiceTest {
+  private YugaByteAdminService mockAdminService;
+  private YugaByteMetadataService mockMetadataService;
+  private WarmUniverseRepository mockWarmUniverseRepository;
+  private PlanMetadata plan;
+  private YugaByteWarmPoolService warmPoolService;
+  private ObjectMapper mapper = new ObjectMapper();
+
+  @Before
+  public void setUp() {
+    YugaByteServiceConfig adminConfig = new YugaByteServiceConfig();
+    adminConfig.warmPoolEnabled = true;
+    plan = new PlanMetadata();
+    plan.setCode("xsmall");
+    plan.setWarmPoolSize(2);
+    plan.setWarmPoolMaxIdleSecs(3600L);
+    CatalogConfig catalogConfig = new CatalogConfig();
+    catalogConfig.setPlans(Collections.singletonList(plan));
+
+    mockAdminService = mock(YugaByteAdminService.class);
+    mockMetadataService = mock(YugaByteMetadataService.class);
+    mockWarmUniverseRepository = mock(WarmUniverseRepository.class);
+    warmPoolService = new YugaByteWarmPoolService(adminConfig, catalogConfig, mockAdminService,
+        mockMetadataService, mockWarmUniverseRepository);
+  }
+
+  private CreateServiceInstanceRequest createRequest(Map<String, Object> parameters) {
+    return CreateServiceInstanceRequest.builder()
+        .serviceInstanceId("4c5ed1a2-0000-0000-0000-000000000000")
+        .serviceDefinitionId("yugabyte-db")
+        .planId("xsmall")
+        .parameters(parameters)
+        .build();
+  }
+
+  private WarmUniverse warmUniverse(String universeUUID, boolean ready) {
+    WarmUniverse warmUniverse = new WarmUniverse("warm-xsmall-" + universeUUID, "xsmall");
+    warmUniverse.setUniverseUUID(universeUUID);
+    if (ready) {
+      warmUniverse.setReady();
+    }
+    return warmUniverse;
+  }
+
+  @Test
+  public void testClaimSkipsUniversesTakenByOthers() {
+    when(mockWarmUniverseRepository.findByPlanIdOrderByCreatedAt("xsmall")).thenReturn(
+        Arrays.asList(warmUniverse("u1", false), warmUniverse("u2", true),
+                      warmUniverse("u3", true)));
+    when(mockWarmUniverseRepository.claim("u2", WarmUniverse.State.READY)).thenReturn(0);
+    when(mockWarmUniverseRepository.claim("u3", WarmUniverse.State.READY)).thenReturn(1);
+    assertEquals(Optional.of("u3"), warmPoolService.claim(createRequest(Collections.emptyMap())));
+    verify(mockWarmUniverseRepository, never()).claim("u1", WarmUniverse.State.READY);
+  }
+
+  @Test
+  public void testClaimOnlyForDefaultParameters() {
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("yb_version", "1.1.0.0-b1");
+    assertFalse(warmPoolService.claim(createRequest(parameters)).isPresent());
+    verify(mockWarmUniverseRepository, never()).findByPlanIdOrderByCreatedAt(anyString());
+  }
+
+  @Test
+  public void testRefill() {
+    WarmUniverse creating = warmUniverse("u1", false);
+    WarmUniverse failed = warmUniverse("u2", false);
+    when(mockWarmUniverseRepository.findByPlanIdOrderByCreatedAt("xsmall"))
+        .thenReturn(Arrays.asList(creating, failed));
+    Map<String, UniverseStatus> statuses = new HashMap<>();
+    statuses.put("u1", new UniverseStatus("u1", false, true));
+    statuses.put("u2", new UniverseStatus("u2", false, false));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(statuses);
+
+    ObjectNode response = mapper.createObjectNode();
+    response.put("universeUUID", "u3");
+    mockCreateUniverse(response);
+
+    warmPoolService.refill();
+    assertEquals(WarmUniverse.State.READY, creating.getState());
+    verify(mockAdminService).deleteUniverse("u2");
+    verify(mockWarmUniverseRepository).deleteById("warm-xsmall-u2");
+    // The new universe is saved before its create is sent, and again once it has a UUID.
+    ArgumentCaptor<WarmUniverse> saved = ArgumentCaptor.forClass(WarmUniverse.class);
+    verify(mockWarmUniverseRepository, times(3)).save(saved.capture());
+    WarmUniverse created = saved.getAllValues().get(2);
+    assertEquals(created, saved.getAllValues().get(1));
+    assertEquals("u3", created.getUniverseUUID());
+    assertEquals(WarmUniverse.State.CREATING, created.getState());
+  }
+
+  private void mockCreateUniverse(JsonNode response) {
+    JsonNode payload = mapper.createObjectNode();
+    when(mockMetadataService.getClusterPayload(any())).thenReturn(payload);
+    when(mockAdminService.configureUniverse(payload)).thenReturn(payload);
+    when(mockMetadataService.updateGflags(any(), any())).thenReturn(payload);
+    when(mockAdminService.createUniverse(payload)).thenReturn(response);
+  }
+
+  @Test
+  public void testRefillAdoptsUniversesByName() {
+    // The broker stopped before it heard back about either create, and only the first one
+    // reached YugaWare.
+    WarmUniverse sent = new WarmUniverse("warm-xsmall-1", "xsmall");
+    WarmUniverse lost = new WarmUniverse("warm-xsmall-2", "xsmall");
+    when(mockWarmUniverseRepository.findByPlanIdOrderByCreatedAt("xsmall"))
+        .thenReturn(Arrays.asList(sent, lost));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(Collections.singletonMap(
+        "u1", new UniverseStatus("u1", "warm-xsmall-1", true, false)));
+    ObjectNode response = mapper.createObjectNode();
+    response.put("universeUUID", "u3");
+    mockCreateUniverse(response);
+
+    warmPoolService.refill();
+    assertEquals("u1", sent.getUniverseUUID());
+    verify(mockWarmUniverseRepository).save(sent);
+    verify(mockWarmUniverseRepository).deleteById("warm-xsmall-2");
+    verify(mockAdminService, never()).deleteUniverse(anyString());
+    verify(mockAdminService, times(1)).createUniverse(any());
+  }
+
+  @Test
+  public void testRefillDropsRejectedCreate() {
+    when(mockWarmUniverseRepository.findByPlanIdOrderByCreatedAt("xsmall"))
+        .thenReturn(Collections.emptyList());
+    ObjectNode response = mapper.createObjectNode();
+    response.put("error", "No capacity");
+    mockCreateUniverse(response);
+
+    try {
+      warmPoolService.refill();
+      fail("Expected the create to fail");
+    } catch (YugaByteServiceException e) {
+      assertEquals("No capacity", e.getMessage());
+    }
+    ArgumentCaptor<WarmUniverse> saved = ArgumentCaptor.forClass(WarmUniverse.class);
+    verify(mockWarmUniverseRepository).save(saved.capture());
+    verify(mockWarmUniverseRepository).deleteById(saved.getValue().getUniverseName());
+  }
+
+  @Test
+  public void testRefillRetiresSurplus() {
+    plan.setWarmPoolSize(1);
+    when(mockWarmUniverseRepository.findByPlanIdOrderByCreatedAt("xsmall")).thenReturn(
+        Arrays.asList(warmUniverse("u1", true), warmUniverse("u2", true)));
+    Map<String, UniverseStatus> statuses = new HashMap<>();
+    statuses.put("u1", new UniverseStatus("u1", false, true));
+    statuses.put("u2", new UniverseStatus("u2", false, true));
+    when(mockAdminService.getUniverseStatuses()).thenReturn(statuses);
+    when(mockWarmUniverseRepository.claim("u2", WarmUniverse.State.READY)).thenReturn(1);
+
+    warmPoolService.refill();
+    verify(mockAdminService).deleteUniverse("u2");
+    verify(mockAdminService, never()).deleteUniverse("u1");
+    verify(mockAdminService, never()).createUniverse(any());
+  }
+}
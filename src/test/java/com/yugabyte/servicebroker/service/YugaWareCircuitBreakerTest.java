@@ -0,0 +1,135 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.service;
+
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.yugabyte.servicebroker.exception.YugaByteAuthenticationException;
+import com.yugabyte.servicebroker.exception.YugaWareUnavailableException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class YugaWareCircuitBreakerTest {
+  private YugaByteServiceConfig adminConfig;
+  private YugaWareCircuitBreaker circuitBreaker;
+  private AtomicInteger calls = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    adminConfig = new YugaByteServiceConfig();
+    adminConfig.circuitBreakerEnabled = true;
+    adminConfig.circuitBreakerFailureRateThreshold = 50;
+    adminConfig.circuitBreakerSlowCallRateThreshold = 50;
+    adminConfig.circuitBreakerSlowCallMs = 50;
+    adminConfig.circuitBreakerWindowSize = 4;
+    adminConfig.circuitBreakerMinimumCalls = 4;
+    adminConfig.circuitBreakerOpenSecs = 1;
+    adminConfig.circuitBreakerHalfOpenCalls = 1;
+    circuitBreaker = new YugaWareCircuitBreaker(adminConfig);
+  }
+
+  private void callAndExpect(Class<? extends RuntimeException> expected, RuntimeException error) {
+    try {
+      circuitBreaker.call("GET test", () -> {
+        calls.incrementAndGet();
+        throw error;
+      });
+      fail("Expected " + expected.getSimpleName());
+    } catch (RuntimeException e) {
+      assertTrue(expected.isInstance(e));
+    }
+  }
+
+  private void expectRejected() {
+    int callsBefore = calls.get();
+    callAndExpect(YugaWareUnavailableException.class, new IllegalStateException());
+    assertEquals(callsBefore, calls.get());
+  }
+
+  @Test
+  public void testOpensOnConnectionFailures() {
+    for (int i = 0; i < 4; i++) {
+      callAndExpect(ResourceAccessException.class, new ResourceAccessException("timed out"));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    expectRejected();
+  }
+
+  @Test
+  public void testOpensOnServerErrors() {
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.call("GET test",
+          () -> new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    expectRejected();
+  }
+
+  @Test
+  public void testOpensOnSlowCalls() {
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.call("GET test", () -> {
+        try {
+          Thread.sleep(60);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+      });
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testClientErrorsDontOpen() {
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.call("GET test", () -> new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+      callAndExpect(YugaByteAuthenticationException.class,
+          new YugaByteAuthenticationException("unauthorized"));
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testHalfOpenProbeCloses() throws InterruptedException {
+    for (int i = 0; i < 4; i++) {
+      callAndExpect(ResourceAccessException.class, new ResourceAccessException("timed out"));
+    }
+    expectRejected();
+    Thread.sleep(1100);
+    assertEquals(HttpStatus.OK,
+        circuitBreaker.call("GET test", () -> new ResponseEntity<>(HttpStatus.OK))
+            .getStatusCode());
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testDisabled() {
+    adminConfig.circuitBreakerEnabled = false;
+    circuitBreaker = new YugaWareCircuitBreaker(adminConfig);
+    for (int i = 0; i < 8; i++) {
+      callAndExpect(ResourceAccessException.class, new ResourceAccessException("timed out"));
+    }
+    assertEquals(8, calls.get());
+    assertEquals(CircuitBreaker.State.DISABLED, circuitBreaker.getState());
+  }
+}
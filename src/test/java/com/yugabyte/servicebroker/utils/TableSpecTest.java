@@ -0,0 +1,87 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TableSpecTest {
+  private static List<TableSpec> parse(String tablesJson) throws IOException {
+    return TableSpec.parse(new ObjectMapper().readValue(tablesJson, List.class));
+  }
+
+  private static void assertRejected(String tablesJson) throws IOException {
+    try {
+      parse(tablesJson);
+      fail("Accepted " + tablesJson);
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testCreateStatement() throws IOException {
+    List<TableSpec> tables = parse("[{\"name\": \"orders\", \"tablets\": 16, " +
+        "\"columns\": {\"id\": \"UUID\", \"item\": \"varchar(64)\"," +
+        " \"tags\": \"map<text, int>\"}," +
+        " \"primary_key\": [\"id\", \"item\"]}]");
+    assertEquals(1, tables.size());
+    assertEquals(Integer.valueOf(16), tables.get(0).getTablets());
+    assertEquals("CREATE TABLE IF NOT EXISTS shop.orders (id uuid, item varchar(64), " +
+                 "tags map<text, int>, PRIMARY KEY (id, item)) WITH tablets = 16",
+                 tables.get(0).getCreateStatement("shop.orders", " WITH tablets = 16"));
+  }
+
+  @Test
+  public void testNoTables() {
+    assertEquals(Collections.emptyList(), TableSpec.parse(null));
+  }
+
+  @Test
+  public void testMalformedTablesAreRejected() throws IOException {
+    assertRejected("[{\"name\": \"Orders\", \"columns\": {\"id\": \"int\"}, " +
+                   "\"primary_key\": \"id\"}]");
+    assertRejected("[{\"name\": \"orders\", \"columns\": {\"id\": \"int); DROP ROLE x; --\"}, " +
+                   "\"primary_key\": \"id\"}]");
+    assertRejected("[{\"name\": \"orders\", \"columns\": {\"id\": \"int\"}, " +
+                   "\"primary_key\": \"item\"}]");
+    assertRejected("[{\"name\": \"orders\", \"columns\": {\"id\": \"int\"}}]");
+    assertRejected("[{\"name\": \"orders\", \"columns\": {\"id\": \"int\"}, " +
+                   "\"primary_key\": \"id\", \"tablets\": 0}]");
+    assertRejected("[\"orders\"]");
+  }
+
+  @Test
+  public void testTypes() {
+    assertEquals("double precision", TableSpec.checkType(" Double  Precision "));
+    assertEquals("numeric(10, 2)", TableSpec.checkType("numeric(10,2)"));
+    assertEquals("varchar(64)", TableSpec.checkType("varchar (64)"));
+    assertEquals("map<text, int>", TableSpec.checkType("map<text,int>"));
+    assertEquals("list<uuid>", TableSpec.checkType("list<uuid>"));
+    assertNull(TableSpec.checkType("int generated always as identity"));
+    assertNull(TableSpec.checkType("text collate c"));
+    assertNull(TableSpec.checkType("int(4)"));
+    assertNull(TableSpec.checkType("varchar(10, 2)"));
+    assertNull(TableSpec.checkType("map<text>"));
+    assertNull(TableSpec.checkType("list<serial>"));
+    assertNull(TableSpec.checkType("int<text>"));
+  }
+}
@@ -0,0 +1,103 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.yugabyte.servicebroker.model.YugaByteConfig;
+import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YBClientTest {
+  private YugaByteConfigRepository mockConfigRepository;
+  private AtomicInteger bootstraps = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    mockConfigRepository = mock(YugaByteConfigRepository.class);
+  }
+
+  private YBClient createClient(String universeUUID) {
+    return new YBClient(universeUUID, Collections.emptyList(), mockConfigRepository, null) {
+      @Override
+      protected int getDefaultPort() {
+        return 0;
+      }
+
+      @Override
+      protected Map<String, String> createAuth(Map<String, Object> parameters) {
+        return null;
+      }
+
+      @Override
+      public void deleteAuth(Map<String, String> credentials) {
+      }
+    };
+  }
+
+  @Test
+  public void testSystemRolesBootstrappedOnce() {
+    createClient("u1").bootstrapSystemRoles(YBClient.ClientType.YCQL,
+        bootstraps::incrementAndGet);
+    assertEquals(1, bootstraps.get());
+    ArgumentCaptor<YugaByteConfig> saved = ArgumentCaptor.forClass(YugaByteConfig.class);
+    verify(mockConfigRepository).save(saved.capture());
+    assertEquals("ycql-roles-u1", saved.getValue().getConfigKey());
+
+    when(mockConfigRepository.existsById("ycql-roles-u1")).thenReturn(true);
+    createClient("u1").bootstrapSystemRoles(YBClient.ClientType.YCQL,
+        bootstraps::incrementAndGet);
+    createClient("u2").bootstrapSystemRoles(YBClient.ClientType.YCQL,
+        bootstraps::incrementAndGet);
+    assertEquals(2, bootstraps.get());
+  }
+
+  @Test
+  public void testFailedBootstrapIsNotRecorded() {
+    try {
+      createClient("u1").bootstrapSystemRoles(YBClient.ClientType.YSQL, () -> {
+        throw new RuntimeException("Failed to create role");
+      });
+      fail("Expected the bootstrap to fail");
+    } catch (RuntimeException e) {
+      assertEquals("Failed to create role", e.getMessage());
+    }
+    verify(mockConfigRepository, never()).save(any());
+  }
+
+  @Test
+  public void testTenantClientTypes() {
+    assertEquals(EnumSet.of(YBClient.ClientType.YSQL, YBClient.ClientType.YCQL),
+                 YBClient.TENANT_CLIENT_TYPES);
+    for (YBClient.TenantClientType tenantType : YBClient.TenantClientType.values()) {
+      TenantClient client = tenantType.getInstance("u1", Collections.emptyList(),
+                                                   mockConfigRepository, null);
+      assertEquals(tenantType.getClientType().getInstance("u1", Collections.emptyList(),
+                                                          mockConfigRepository, null).getClass(),
+                   client.getClass());
+    }
+  }
+}
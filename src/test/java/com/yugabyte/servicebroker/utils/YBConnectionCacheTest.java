@@ -0,0 +1,159 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+import com.google.common.net.HostAndPort;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.JedisPool;
+
+import javax.sql.DataSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YBConnectionCacheTest {
+  private static final HostAndPort NODE1 = HostAndPort.fromParts("10.0.0.1", 9042);
+  private static final HostAndPort NODE2 = HostAndPort.fromParts("10.0.0.2", 9042);
+
+  private YBConnectionCache connectionCache;
+  private AtomicInteger connects = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    YugaByteServiceConfig adminConfig = new YugaByteServiceConfig();
+    adminConfig.apiConnectionsIdleSecs = 300;
+    adminConfig.apiConnectionsMaxUniverses = 10;
+    connectionCache = new YBConnectionCache(adminConfig);
+  }
+
+  @After
+  public void tearDown() {
+    connectionCache.close();
+  }
+
+  private Session connect() {
+    connects.incrementAndGet();
+    Session session = mock(Session.class);
+    when(session.getCluster()).thenReturn(mock(Cluster.class));
+    return session;
+  }
+
+  @Test
+  public void testSessionReusedPerUniverseAndCredentials() {
+    Session session = connectionCache.getYCQLSession("u1", NODE1, "admin", "secret", this::connect);
+    assertSame(session,
+        connectionCache.getYCQLSession("u1", NODE1, "admin", "secret", this::connect));
+    assertNotSame(session,
+        connectionCache.getYCQLSession("u1", NODE1, "admin", "rotated", this::connect));
+    assertNotSame(session,
+        connectionCache.getYCQLSession("u2", NODE2, "admin", "secret", this::connect));
+    assertEquals(3, connects.get());
+  }
+
+  @Test
+  public void testEvictUniverseClosesItsSessions() {
+    Session u1Session = connectionCache.getYCQLSession("u1", NODE1, "admin", "secret", this::connect);
+    Session u2Session = connectionCache.getYCQLSession("u2", NODE2, "admin", "secret", this::connect);
+    connectionCache.evictUniverse("u1");
+    verify(u1Session.getCluster()).closeAsync();
+    verify(u2Session.getCluster(), never()).closeAsync();
+
+    connectionCache.getYCQLSession("u1", NODE1, "admin", "secret", this::connect);
+    assertEquals(3, connects.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFailedConnectIsNotCached() {
+    try {
+      connectionCache.getYCQLSession("u1", NODE1, "admin", "secret", () -> {
+        throw new IllegalStateException("No host available");
+      });
+    } finally {
+      connectionCache.getYCQLSession("u1", NODE1, "admin", "secret", this::connect);
+      assertEquals(1, connects.get());
+    }
+  }
+
+  @Test
+  public void testEvictDatabaseClosesOnlyItsPool() {
+    DataSource defaultPool = connectionCache.getYSQLDataSource("u1", NODE1, "yugabyte", "admin",
+        "secret", () -> mock(HikariDataSource.class));
+    DataSource tenantPool = connectionCache.getYSQLDataSource("u1", NODE1, "si_1", "admin",
+        "secret", () -> mock(HikariDataSource.class));
+    assertSame(defaultPool, connectionCache.getYSQLDataSource("u1", NODE1, "yugabyte", "admin",
+        "secret", () -> mock(HikariDataSource.class)));
+
+    connectionCache.evictDatabase("u1", "si_1");
+    verify((HikariDataSource) tenantPool).close();
+    verify((HikariDataSource) defaultPool, never()).close();
+
+    connectionCache.evictUniverse("u1");
+    verify((HikariDataSource) defaultPool).close();
+  }
+
+  @Test
+  public void testYEDISPoolsPerNodeAndPassword() {
+    HostAndPort node1 = HostAndPort.fromParts("10.0.0.1", 6379);
+    HostAndPort node2 = HostAndPort.fromParts("10.0.0.2", 6379);
+    JedisPool pool = connectionCache.getYEDISPool("u1", node1, null, () -> mock(JedisPool.class));
+    assertSame(pool, connectionCache.getYEDISPool("u1", node1, null,
+        () -> mock(JedisPool.class)));
+    assertNotSame(pool, connectionCache.getYEDISPool("u1", node2, null,
+        () -> mock(JedisPool.class)));
+    assertNotSame(pool, connectionCache.getYEDISPool("u1", node1, "secret",
+        () -> mock(JedisPool.class)));
+
+    connectionCache.evictYEDISPools("u1");
+    verify(pool).close();
+  }
+
+  @Test
+  public void testSessionsWithoutUniverseArePerNode() {
+    Session session = connectionCache.getYCQLSession(null, NODE1, "admin", "secret",
+        this::connect);
+    assertSame(session,
+        connectionCache.getYCQLSession(null, NODE1, "admin", "secret", this::connect));
+    assertNotSame(session,
+        connectionCache.getYCQLSession(null, NODE2, "admin", "secret", this::connect));
+  }
+
+  @Test
+  public void testCrowdedOutPoolIsClosedLater() {
+    YugaByteServiceConfig adminConfig = new YugaByteServiceConfig();
+    adminConfig.apiConnectionsIdleSecs = 300;
+    adminConfig.apiConnectionsMaxUniverses = 1;
+    YBConnectionCache smallCache = new YBConnectionCache(adminConfig);
+    DataSource u1Pool = smallCache.getYSQLDataSource("u1", NODE1, "yugabyte", "admin",
+        "secret", () -> mock(HikariDataSource.class));
+    smallCache.getYSQLDataSource("u2", NODE2, "yugabyte", "admin", "secret",
+        () -> mock(HikariDataSource.class));
+    // It may still be in use by whoever got it just before.
+    verify((HikariDataSource) u1Pool, never()).close();
+
+    smallCache.close();
+    verify((HikariDataSource) u1Pool).close();
+  }
+}
@@ -0,0 +1,79 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.google.common.net.HostAndPort;
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class YBEndpointProberTest {
+  private ServerSocket liveNode;
+  private HostAndPort live;
+  private HostAndPort dead;
+  private YBEndpointProber prober;
+
+  @Before
+  public void setUp() throws IOException {
+    liveNode = new ServerSocket(0);
+    live = HostAndPort.fromParts("127.0.0.1", liveNode.getLocalPort());
+    try (ServerSocket closedNode = new ServerSocket(0)) {
+      dead = HostAndPort.fromParts("127.0.0.1", closedNode.getLocalPort());
+    }
+    YugaByteServiceConfig adminConfig = new YugaByteServiceConfig();
+    adminConfig.endpointProbeEnabled = true;
+    adminConfig.endpointProbeTimeoutMs = 1000;
+    adminConfig.endpointProbeTtlSecs = 60;
+    adminConfig.cacheMaxEntries = 10;
+    prober = new YBEndpointProber(adminConfig);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    prober.close();
+    liveNode.close();
+  }
+
+  @Test
+  public void testUnreachableNodesAreLeftOut() {
+    assertEquals(Collections.singletonList(live),
+        prober.order("u1/YSQL", Arrays.asList(dead, live)));
+  }
+
+  @Test
+  public void testAllUnreachableKeepsTheList() {
+    List<HostAndPort> hostAndPorts = Arrays.asList(dead, dead);
+    assertSame(hostAndPorts, prober.order("u1/YSQL", hostAndPorts));
+  }
+
+  @Test
+  public void testProbesAreReusedUntilInvalidated() throws IOException {
+    prober.order("u1/YSQL", Arrays.asList(dead, live));
+    liveNode.close();
+    assertEquals(Collections.singletonList(live),
+        prober.order("u1/YSQL", Arrays.asList(dead, live)));
+
+    prober.invalidate("u1/YSQL");
+    assertEquals(Arrays.asList(dead, live), prober.order("u1/YSQL", Arrays.asList(dead, live)));
+  }
+}
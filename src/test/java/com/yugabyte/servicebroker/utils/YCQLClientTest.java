@@ -0,0 +1,90 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.datastax.driver.core.Session;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
+import com.yugabyte.servicebroker.model.UniversePlacement;
+import com.yugabyte.servicebroker.model.YugaByteConfig;
+import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class YCQLClientTest {
+  private static final UniversePlacement PLACEMENT = new UniversePlacement(Arrays.asList(
+      new UniversePlacement.Node("10.0.1.1", "aws", "us-east-1", "us-east-1a", true),
+      new UniversePlacement.Node("10.0.0.1", "aws", "us-west-2", "us-west-2a", true),
+      new UniversePlacement.Node("10.0.0.2", "aws", "us-west-2", "us-west-2b", true),
+      new UniversePlacement.Node("10.0.2.1", "aws", "eu-west-1", "eu-west-1a", false),
+      new UniversePlacement.Node("10.0.2.2", "aws", "eu-west-1", "eu-west-1b", false),
+      new UniversePlacement.Node("10.0.2.3", "aws", "eu-west-1", "eu-west-1c", false)));
+
+  private static final List<HostAndPort> HOSTS = Arrays.asList(
+      HostAndPort.fromParts("10.0.1.1", 9042), HostAndPort.fromParts("10.0.2.1", 9042),
+      HostAndPort.fromParts("10.0.0.1", 9042), HostAndPort.fromParts("10.0.0.2", 9042),
+      HostAndPort.fromParts("10.0.2.2", 9042), HostAndPort.fromParts("10.0.2.3", 9042));
+
+  @Test
+  public void testLocalDatacenterDefaultsToLargestPrimaryRegion() {
+    Map<String, String> credentials = YCQLClient.getLocalityCredentials(HOSTS, PLACEMENT, null);
+    assertEquals("us-west-2", credentials.get("localDatacenter"));
+    assertEquals("10.0.0.1,10.0.0.2,10.0.1.1,10.0.2.1,10.0.2.2,10.0.2.3",
+                 credentials.get("host"));
+    assertEquals("10.0.0.1,10.0.0.2", credentials.get("datacenter.us-west-2"));
+    assertEquals("10.0.2.1,10.0.2.2,10.0.2.3", credentials.get("datacenter.eu-west-1"));
+    assertEquals("10.0.0.2", credentials.get("rack.us-west-2.us-west-2b"));
+  }
+
+  @Test
+  public void testLocalRegionFromParameters() {
+    Map<String, String> credentials =
+        YCQLClient.getLocalityCredentials(HOSTS, PLACEMENT, "eu-west-1");
+    assertEquals("eu-west-1", credentials.get("localDatacenter"));
+    assertEquals("10.0.2.1,10.0.2.2,10.0.2.3,10.0.1.1,10.0.0.1,10.0.0.2",
+                 credentials.get("host"));
+  }
+
+  @Test
+  public void testAdminSessionFollowsTheFirstHost() {
+    YugaByteConfigRepository mockConfigRepository = mock(YugaByteConfigRepository.class);
+    when(mockConfigRepository.findById(anyString())).thenReturn(Optional.of(new YugaByteConfig(
+        "ycql-admin-user", ImmutableMap.of("username", "admin", "password", "secret"))));
+    YBConnectionCache mockConnectionCache = mock(YBConnectionCache.class);
+    Session first = mock(Session.class);
+    Session second = mock(Session.class);
+    when(mockConnectionCache.getYCQLSession(eq("u1"), eq(HOSTS.get(0)), eq("admin"),
+        eq("secret"), any())).thenReturn(first);
+    when(mockConnectionCache.getYCQLSession(eq("u1"), eq(HOSTS.get(2)), eq("admin"),
+        eq("secret"), any())).thenReturn(second);
+
+    assertSame(first, new YCQLClient("u1", HOSTS, mockConfigRepository, mockConnectionCache)
+        .getSession());
+    // Once the probes find another node faster, the admin session goes through it instead.
+    List<HostAndPort> reordered = Arrays.asList(HOSTS.get(2), HOSTS.get(0));
+    assertSame(second,
+        new YCQLClient("u1", reordered, mockConfigRepository, mockConnectionCache).getSession());
+  }
+}
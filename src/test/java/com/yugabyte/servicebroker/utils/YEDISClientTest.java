@@ -0,0 +1,178 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.google.common.net.HostAndPort;
+import com.yugabyte.servicebroker.model.YugaByteConfig;
+import com.yugabyte.servicebroker.repository.YugaByteConfigRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class YEDISClientTest {
+  private static final HostAndPort NODE1 = HostAndPort.fromParts("10.0.0.1", 6379);
+  private static final HostAndPort NODE2 = HostAndPort.fromParts("10.0.0.2", 6379);
+
+  private YBConnectionCache mockConnectionCache;
+  private YEDISClient client;
+
+  @Before
+  public void setUp() {
+    mockConnectionCache = mock(YBConnectionCache.class);
+    client = new YEDISClient("u1", Arrays.asList(NODE1, NODE2), null, mockConnectionCache);
+  }
+
+  private void mockPool(HostAndPort hostAndPort, JedisPool pool) {
+    when(mockConnectionCache.getYEDISPool(eq("u1"), eq(hostAndPort), anyString(), any()))
+        .thenReturn(pool);
+  }
+
+  @Test
+  public void testFailsOverToTheNextNode() {
+    JedisPool downPool = mock(JedisPool.class);
+    when(downPool.getResource()).thenThrow(new JedisConnectionException("Connection refused"));
+    mockPool(NODE1, downPool);
+    Jedis jedis = mock(Jedis.class);
+    when(jedis.ping()).thenReturn("PONG");
+    JedisPool upPool = mock(JedisPool.class);
+    when(upPool.getResource()).thenReturn(jedis);
+    mockPool(NODE2, upPool);
+
+    assertEquals("PONG", client.withSession("secret", Jedis::ping));
+  }
+
+  @Test(expected = JedisConnectionException.class)
+  public void testFailsWhenNoNodeIsReachable() {
+    JedisPool downPool = mock(JedisPool.class);
+    when(downPool.getResource()).thenThrow(new JedisConnectionException("Connection refused"));
+    mockPool(NODE1, downPool);
+    mockPool(NODE2, downPool);
+    client.withSession("secret", Jedis::ping);
+  }
+
+  @Test
+  public void testResumedPasswordRolloutReusesThePendingPassword() {
+    YugaByteConfigRepository mockConfigRepository = mock(YugaByteConfigRepository.class);
+    when(mockConfigRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(mockConfigRepository.findById("yedis-admin-user-pending-u1")).thenReturn(Optional.of(
+        new YugaByteConfig("yedis-admin-user-pending-u1",
+            new HashMap<>(Collections.singletonMap("password", "pending")))));
+    when(mockConfigRepository.existsById("yedis-admin-user-pending-u1")).thenReturn(true);
+    client = new YEDISClient("u1", Arrays.asList(NODE1, NODE2), mockConfigRepository,
+        mockConnectionCache);
+
+    // The earlier attempt got as far as the first node.
+    Jedis node1WithoutPassword = mock(Jedis.class);
+    when(node1WithoutPassword.configSet("requirepass", "pending"))
+        .thenThrow(new JedisDataException("NOAUTH Authentication required."));
+    Jedis node1WithPassword = mock(Jedis.class);
+    when(node1WithPassword.configSet("requirepass", "pending")).thenReturn("OK");
+    Jedis node2 = mock(Jedis.class);
+    when(node2.configSet("requirepass", "pending")).thenReturn("OK");
+    mockPool(NODE1, null, node1WithoutPassword);
+    mockPool(NODE1, "pending", node1WithPassword);
+    mockPool(NODE2, null, node2);
+
+    assertEquals("pending", client.createAuth(new HashMap<>()).get("password"));
+    verify(node1WithPassword).configSet("requirepass", "pending");
+    verify(node2).configSet("requirepass", "pending");
+    verify(node1WithoutPassword, never()).flushAll();
+    verify(mockConfigRepository).deleteById("yedis-admin-user-pending-u1");
+  }
+
+  @Test
+  public void testPasswordsArePerUniverse() {
+    YugaByteConfigRepository mockConfigRepository = mock(YugaByteConfigRepository.class);
+    when(mockConfigRepository.findById(anyString())).thenReturn(Optional.empty());
+    // Another universe is half way through its rollout.
+    when(mockConfigRepository.findById("yedis-admin-user-pending-u2")).thenReturn(Optional.of(
+        new YugaByteConfig("yedis-admin-user-pending-u2",
+            new HashMap<>(Collections.singletonMap("password", "pending")))));
+    client = new YEDISClient("u1", Arrays.asList(NODE1, NODE2), mockConfigRepository,
+        mockConnectionCache);
+    Jedis node1 = mock(Jedis.class);
+    Jedis node2 = mock(Jedis.class);
+    mockPool(NODE1, null, node1);
+    mockPool(NODE2, null, node2);
+
+    String password = client.createAuth(new HashMap<>()).get("password");
+    assertNotEquals("pending", password);
+    verify(node1).flushAll();
+    verify(node1).configSet("requirepass", password);
+    verify(node2).configSet("requirepass", password);
+    ArgumentCaptor<YugaByteConfig> saved = ArgumentCaptor.forClass(YugaByteConfig.class);
+    verify(mockConfigRepository, times(2)).save(saved.capture());
+    assertEquals(Arrays.asList("yedis-admin-user-pending-u1", "yedis-admin-user-u1"),
+        saved.getAllValues().stream().map(YugaByteConfig::getConfigKey)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testLegacyPasswordIsKeptByItsUniverse() {
+    YugaByteConfigRepository mockConfigRepository = mock(YugaByteConfigRepository.class);
+    when(mockConfigRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(mockConfigRepository.findById("yedis-admin-user")).thenReturn(Optional.of(
+        new YugaByteConfig("yedis-admin-user",
+            new HashMap<>(Collections.singletonMap("password", "legacy")))));
+    client = new YEDISClient("u1", Arrays.asList(NODE1, NODE2), mockConfigRepository,
+        mockConnectionCache);
+    Jedis node1 = mock(Jedis.class);
+    when(node1.ping()).thenThrow(new JedisDataException("NOAUTH Authentication required."));
+    mockPool(NODE1, null, node1);
+
+    assertEquals("legacy", client.createAuth(new HashMap<>()).get("password"));
+    verify(node1, never()).flushAll();
+    verify(node1, never()).configSet(anyString(), anyString());
+    ArgumentCaptor<YugaByteConfig> saved = ArgumentCaptor.forClass(YugaByteConfig.class);
+    verify(mockConfigRepository).save(saved.capture());
+    assertEquals("yedis-admin-user-u1", saved.getValue().getConfigKey());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testPasswordRolloutNeedsHosts() {
+    YugaByteConfigRepository mockConfigRepository = mock(YugaByteConfigRepository.class);
+    when(mockConfigRepository.findById(anyString())).thenReturn(Optional.empty());
+    client = new YEDISClient("u1", Collections.emptyList(), mockConfigRepository,
+        mockConnectionCache);
+    client.createAuth(new HashMap<>());
+  }
+
+  private void mockPool(HostAndPort hostAndPort, String password, Jedis jedis) {
+    JedisPool pool = mock(JedisPool.class);
+    when(pool.getResource()).thenReturn(jedis);
+    when(mockConnectionCache.getYEDISPool(eq("u1"), eq(hostAndPort),
+        password == null ? isNull() : eq(password), any())).thenReturn(pool);
+  }
+}
@@ -0,0 +1,100 @@
+/* Copyright (c) YugaByte, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.  See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.yugabyte.servicebroker.utils;
+
+import com.yugabyte.servicebroker.config.YugaByteServiceConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class YugaWareHttpClientFactoryTest {
+  private YugaByteServiceConfig adminConfig;
+  private SimpleMeterRegistry registry;
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  @Before
+  public void setUp() {
+    adminConfig = new YugaByteServiceConfig();
+    adminConfig.maxConnections = 8;
+    adminConfig.maxConnectionsPerRoute = 4;
+    adminConfig.keepAliveSecs = 30;
+    adminConfig.idleTimeoutSecs = 60;
+    adminConfig.connectTimeoutMs = 1000;
+    adminConfig.readTimeoutMs = 2000;
+    adminConfig.connectionRequestTimeoutMs = 500;
+    registry = new SimpleMeterRegistry();
+    connectionManager = YugaWareHttpClientFactory.createConnectionManager(adminConfig, registry);
+  }
+
+  @After
+  public void tearDown() {
+    connectionManager.close();
+  }
+
+  @Test
+  public void testPoolLimits() {
+    assertEquals(8, connectionManager.getMaxTotal());
+    assertEquals(4, connectionManager.getDefaultMaxPerRoute());
+    assertEquals(8.0, registry.get("yugabyte.admin.pool.max").gauge().value(), 0);
+  }
+
+  @Test
+  public void testTimeouts() {
+    RequestConfig requestConfig = YugaWareHttpClientFactory.createRequestConfig(adminConfig);
+    assertEquals(1000, requestConfig.getConnectTimeout());
+    assertEquals(2000, requestConfig.getSocketTimeout());
+    assertEquals(500, requestConfig.getConnectionRequestTimeout());
+    assertNotNull(YugaWareHttpClientFactory.createRequestFactory(adminConfig, registry));
+  }
+
+  @Test
+  public void testKeepAlive() {
+    ConnectionKeepAliveStrategy keepAliveStrategy =
+        YugaWareHttpClientFactory.createKeepAliveStrategy(adminConfig);
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    assertEquals(30000,
+        keepAliveStrategy.getKeepAliveDuration(response, new BasicHttpContext()));
+
+    response.addHeader("Keep-Alive", "timeout=5");
+    assertEquals(5000, keepAliveStrategy.getKeepAliveDuration(response, new BasicHttpContext()));
+  }
+
+  @Test
+  public void testLeaseMetrics() throws Exception {
+    HttpRoute route = new HttpRoute(new HttpHost("localhost", 9000));
+    HttpClientConnection connection =
+        connectionManager.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+    assertEquals(1, registry.get("yugabyte.admin.pool.lease.wait").timer().count());
+    assertEquals(1.0, registry.get("yugabyte.admin.pool.leased").gauge().value(), 0);
+    assertEquals(0.125, registry.get("yugabyte.admin.pool.utilization").gauge().value(), 0);
+
+    connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+    assertEquals(0.0, registry.get("yugabyte.admin.pool.utilization").gauge().value(), 0);
+  }
+}